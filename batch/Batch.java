@@ -0,0 +1,183 @@
+package batch;
+
+import cache.Canonical;
+import cache.SolutionCache;
+import format.LineFormat;
+import game.Sudoku;
+import solver.Solver;
+import solver.Solvers;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Solves every puzzle in a file. Puzzles are marked and then handed to the chosen solver on a fixed
+ * pool of workers; results are written in input order as
+ *
+ *   solution,status,micros
+ *
+ * where solution is the grid as far as it was solved ('.' for unknown cells), status is solved or
+ * unsolved, and micros is the time spent on that puzzle. A puzzle whose solve fails gets an
+ * error,message line in its place instead. At most `window` puzzles are in flight:
+ * the reader blocks until the writer has caught up, so memory stays flat on any input size.
+ *
+ * Given a cache size, puzzles equivalent under symmetry to one solved earlier are answered from a
+ * SolutionCache of that many megabytes, before marking.
+ *
+ * Usage: Batch input output [solver] [workers] [window] [cacheMegabytes]
+ */
+public class Batch {
+
+    // queued after the last puzzle
+    private static final Future<String> END = CompletableFuture.completedFuture(null);
+
+    private final Solver solver;
+    private final int workers;
+    private final int window;
+    private SolutionCache cache;
+
+    public static void main(String[] args) throws Exception {
+        if(args.length < 2) {
+            System.err.println("Usage: Batch input output [solver] [workers] [window] [cacheMegabytes]");
+            System.exit(1);
+        }
+
+        Solver solver = Solvers.byName(args.length > 2 ? args[2] : Solvers.DEFAULT);
+        int workers = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        int window = args.length > 4 ? Integer.parseInt(args[4]) : workers * 256;
+
+        long cacheMegabytes = args.length > 5 ? Long.parseLong(args[5]) : 0;
+
+        Batch batch = new Batch(solver, workers, window);
+        if(cacheMegabytes > 0) batch.setCache(new SolutionCache(cacheMegabytes << 20));
+        batch.run(Paths.get(args[0]), Paths.get(args[1]));
+    }
+
+    public Batch(Solver solver, int workers, int window) {
+        this.solver = solver;
+        this.workers = workers;
+        this.window = window;
+    }
+
+    /** Answers puzzles equivalent to ones already solved from the cache; null, the default, solves every puzzle. */
+    public void setCache(SolutionCache cache) {
+        this.cache = cache;
+    }
+
+    /** Solves every puzzle of input into output and returns the number of puzzles read. */
+    public long run(Path input, Path output) throws Exception {
+        long startTime = System.nanoTime();
+
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        BlockingQueue<Future<String>> inFlight = new ArrayBlockingQueue<>(window);
+
+        long[] counts = new long[3]; // puzzles written, puzzles solved, puzzles failed
+        AtomicBoolean writeFailed = new AtomicBoolean();
+        Thread writer = new Thread(() -> write(inFlight, output, counts, writeFailed), "batch-writer");
+        writer.start();
+
+        long nbPuzzles = 0;
+        try (PuzzleReader reader = new PuzzleReader(input)) {
+            int[] grid;
+            while(!writeFailed.get() && (grid = reader.next()) != null) { // no point reading on once results cannot be written
+                int[] puzzle = grid;
+                inFlight.put(pool.submit(() -> solve(puzzle))); // blocks while the window is full
+                nbPuzzles++;
+            }
+        }
+        finally {
+            inFlight.put(END);
+            writer.join();
+            pool.shutdown();
+        }
+
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+        System.err.println(String.format("%d puzzles, %d solved, %d failed, %.3f s, %.0f puzzles/sec",
+            counts[0], counts[1], counts[2], seconds, counts[0] / seconds));
+        if(cache != null) System.err.println(cache);
+
+        return nbPuzzles;
+    }
+
+    private String solve(int[] grid) {
+        long start = System.nanoTime();
+
+        Canonical canonical = cache == null ? null : cache.canonicalize(grid);
+        int[] cached = cache == null ? null : cache.get(canonical);
+        if(cached != null) {
+            long micros = (System.nanoTime() - start) / 1000;
+            return LineFormat.write(cached, new StringBuilder(cached.length + 24)).append(",solved,").append(micros).toString();
+        }
+
+        Sudoku sudoku = new Sudoku(grid);
+        Sudoku solution = solver.solve(sudoku);
+        Sudoku result = solution == null ? sudoku : solution;
+        if(solution != null && cache != null) cache.put(canonical, solution.toIntArray());
+
+        long micros = (System.nanoTime() - start) / 1000;
+
+        StringBuilder str = LineFormat.write(result, new StringBuilder(result.size() + 24));
+        return str.append(solution == null ? ",unsolved," : ",solved,").append(micros).toString();
+    }
+
+    private void write(BlockingQueue<Future<String>> inFlight, Path output, long[] counts, AtomicBoolean failed) {
+        try (BufferedWriter out = Files.newBufferedWriter(output, StandardCharsets.US_ASCII)) {
+            Future<String> next;
+            while((next = inFlight.take()) != END) {
+                String line;
+                try {
+                    line = next.get();
+                }
+                catch(ExecutionException e) {
+                    line = LineFormat.error(e.getCause());
+                    counts[2]++;
+                }
+                out.write(line);
+                out.newLine();
+                counts[0]++;
+                if(line.contains(",solved,")) counts[1]++;
+            }
+        }
+        catch(Exception e) {
+            failed.set(true); // the reader stops at its next puzzle
+            System.err.println("Writing results failed after " + counts[0] + " puzzles: " + e);
+            long nbDropped = drain(inFlight); // keep the reader from blocking on a full window
+            System.err.println(nbDropped + " puzzles after that were cancelled or dropped");
+        }
+    }
+
+    // cancels every puzzle still in flight up to the end of input, and returns how many there were
+    private static long drain(BlockingQueue<Future<String>> inFlight) {
+        long nb = 0;
+        boolean interrupted = false;
+        try {
+            while(true) {
+                try {
+                    Future<String> next = inFlight.take();
+                    if(next == END) return nb;
+                    next.cancel(true);
+                    nb++;
+                }
+                catch(InterruptedException e) {
+                    interrupted = true; // keep going, or the reader would block on a full window
+                }
+            }
+        }
+        finally {
+            if(interrupted) Thread.currentThread().interrupt();
+        }
+    }
+
+}
@@ -0,0 +1,91 @@
+package batch;
+
+import format.LineFormat;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Streams puzzles from a file with one puzzle per line, in either layout LineFormat reads: one
+ * character per cell ('0' or '.' for blanks, the usual 81-character format for 9 x 9), or fixed-width
+ * decimal fields for larger grids. Lines need not all be the same size. The file is memory-mapped a
+ * window at a time, so files larger than memory, or than 2 GB, are read without copying them onto the heap.
+ * Blank lines and lines starting with '#' are skipped.
+ */
+public class PuzzleReader implements Closeable {
+
+    private static final long WINDOW = 1L << 26; // 64 MB mapped at a time
+
+    private final FileChannel channel;
+    private final long size;
+
+    private MappedByteBuffer window;
+    private long windowStart = 0;
+
+    // the current line; it may straddle two windows
+    private byte[] line = new byte[128];
+    private int lineLength;
+
+    public PuzzleReader(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.size = this.channel.size();
+        this.map(0);
+    }
+
+    /** The next puzzle as cell values (0 for blank), or null at the end of the file. */
+    public int[] next() throws IOException {
+        while(this.readLine()) {
+            if(this.lineLength == 0 || this.line[0] == '#') continue;
+
+            try {
+                return LineFormat.parse(ByteBuffer.wrap(this.line, 0, this.lineLength), this.lineLength);
+            }
+            catch(IllegalArgumentException e){
+                throw new IOException(e.getMessage(), e);
+            }
+        }
+        return null;
+    }
+
+    // fills line with the next line of the file, without its terminator; false at the end of the file
+    private boolean readLine() throws IOException {
+        this.lineLength = 0;
+        boolean any = false;
+
+        while(true) {
+            if(!this.window.hasRemaining()) {
+                long next = this.windowStart + this.window.capacity();
+                if(next >= this.size) return any;
+                this.map(next);
+            }
+
+            byte b = this.window.get();
+            any = true;
+            if(b == '\n') return true;
+            if(b == '\r') continue;
+
+            if(this.lineLength == this.line.length) {
+                byte[] bigger = new byte[this.line.length * 2];
+                System.arraycopy(this.line, 0, bigger, 0, this.lineLength);
+                this.line = bigger;
+            }
+            this.line[this.lineLength++] = b;
+        }
+    }
+
+    private void map(long start) throws IOException {
+        this.windowStart = start;
+        this.window = this.channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(WINDOW, this.size - start));
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+
+}
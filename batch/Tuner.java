@@ -0,0 +1,246 @@
+package batch;
+
+import game.Sudoku;
+import jeans.Genie;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Picks Genie settings for a corpus by racing every combination of a few values of each knob.
+ * Puzzles are marked and sorted into buckets by the share of cells marking leaves empty; those
+ * marking solves outright are left out. Each bucket is raced on its own:
+ *
+ * - every configuration still in the race solves the next block of puzzles, each solve being a
+ *   single-threaded Genie on a fixed pool of workers and given up after the cutoff;
+ * - configurations are ranked by their median time over every puzzle seen so far, a given-up
+ *   solve counting as slower than any solved one, and the slower half is dropped;
+ *
+ * until one configuration is left or the bucket runs out of puzzles. Losing configurations stop
+ * costing CPU time after a block or two, so most of the budget goes to the close contenders.
+ * The result is the configuration with the best median in each bucket.
+ *
+ * Usage: Tuner corpus [cutoffSeconds] [workers] [blockSize]
+ */
+public class Tuner {
+
+    // the values raced for each knob of the Genie constructor; every combination is one configuration
+    private static final int[] POPULATION_SIZES = {1000, 3000, 6000};
+    private static final double[] SELECTION_RATES = {0.2, 0.3};
+    private static final double[] RANDOM_SELECTION_RATES = {0.1, 0.3};
+    private static final int[] NB_CHILDREN = {4, 10};
+    private static final int[] MAX_NB_GENERATIONS_WITHOUT_IMPROVEMENT = {20, 30, 60};
+
+    // buckets by share of cells left empty by marking: easy below the first bound, hard from the second on
+    private static final String[] BUCKETS = {"easy", "medium", "hard"};
+    private static final double[] BUCKET_BOUNDS = {0.3, 0.5};
+
+    private static final long UNSOLVED = Long.MAX_VALUE;
+
+    private final long cutoffMillis;
+    private final int workers;
+    private final int blockSize;
+
+    public static void main(String[] args) throws Exception {
+        if(args.length < 1) {
+            System.err.println("Usage: Tuner corpus [cutoffSeconds] [workers] [blockSize]");
+            System.exit(1);
+        }
+
+        long cutoffMillis = args.length > 1 ? (long) (Double.parseDouble(args[1]) * 1000) : 10_000;
+        int workers = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        int blockSize = args.length > 3 ? Integer.parseInt(args[3]) : Math.max(4, workers);
+
+        new Tuner(cutoffMillis, workers, blockSize).run(Paths.get(args[0]));
+    }
+
+    public Tuner(long cutoffMillis, int workers, int blockSize) {
+        this.cutoffMillis = cutoffMillis;
+        this.workers = workers;
+        this.blockSize = blockSize;
+    }
+
+    /** One combination of Genie settings. */
+    public static final class Config {
+        public final int populationSize;
+        public final double selectionRate;
+        public final double randomSelectionRate;
+        public final int nbChildren;
+        public final int maxNbGenerationsWithoutImprovement;
+
+        public Config(int populationSize, double selectionRate, double randomSelectionRate, int nbChildren, int maxNbGenerationsWithoutImprovement) {
+            this.populationSize = populationSize;
+            this.selectionRate = selectionRate;
+            this.randomSelectionRate = randomSelectionRate;
+            this.nbChildren = nbChildren;
+            this.maxNbGenerationsWithoutImprovement = maxNbGenerationsWithoutImprovement;
+        }
+
+        /** A Genie with these settings that runs on the calling thread, bounded by time rather than generations. */
+        public Genie newGenie(long cutoffMillis) {
+            Genie genie = new Genie(populationSize, selectionRate, randomSelectionRate, nbChildren, Integer.MAX_VALUE, maxNbGenerationsWithoutImprovement, null);
+            genie.setTimeLimitMillis(cutoffMillis);
+            return genie;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("new Genie(%d, %.2f, %.2f, %d, -, %d)",
+                populationSize, selectionRate, randomSelectionRate, nbChildren, maxNbGenerationsWithoutImprovement);
+        }
+    }
+
+    /** A configuration and the time it took on each puzzle raced so far, in nanoseconds, UNSOLVED where it gave up. */
+    private static final class Entry {
+        final Config config;
+        final List<Long> times = new ArrayList<>();
+
+        Entry(Config config) {
+            this.config = config;
+        }
+
+        long median() {
+            long[] sorted = new long[times.size()];
+            for(int i = 0; i < sorted.length; i++){
+                sorted[i] = times.get(i);
+            }
+            Arrays.sort(sorted);
+            return sorted[sorted.length / 2]; // the upper median, so that half the puzzles unsolved is unsolved
+        }
+
+        int nbSolved() {
+            int nb = 0;
+            for(long time : times){
+                if(time != UNSOLVED) nb++;
+            }
+            return nb;
+        }
+    }
+
+    public static List<Config> configurations() {
+        List<Config> configs = new ArrayList<>();
+        for(int populationSize : POPULATION_SIZES){
+            for(double selectionRate : SELECTION_RATES){
+                for(double randomSelectionRate : RANDOM_SELECTION_RATES){
+                    for(int nbChildren : NB_CHILDREN){
+                        for(int stall : MAX_NB_GENERATIONS_WITHOUT_IMPROVEMENT){
+                            configs.add(new Config(populationSize, selectionRate, randomSelectionRate, nbChildren, stall));
+                        }
+                    }
+                }
+            }
+        }
+        return configs;
+    }
+
+    /** Races every configuration over each bucket of the corpus and prints the winners. */
+    public void run(Path corpus) throws Exception {
+        List<List<int[]>> buckets = new ArrayList<>();
+        for(int b = 0; b < BUCKETS.length; b++){
+            buckets.add(new ArrayList<>());
+        }
+
+        int nbMarked = 0;
+        try (PuzzleReader reader = new PuzzleReader(corpus)) {
+            int[] grid;
+            while((grid = reader.next()) != null) {
+                Sudoku sudoku = new Sudoku(grid);
+                if(sudoku.validate()) {
+                    nbMarked++;
+                    continue;
+                }
+                buckets.get(bucketOf(sudoku)).add(grid);
+            }
+        }
+        System.err.println(String.format("%d puzzles solved by marking alone, %d easy, %d medium, %d hard",
+            nbMarked, buckets.get(0).size(), buckets.get(1).size(), buckets.get(2).size()));
+
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        try {
+            for(int b = 0; b < BUCKETS.length; b++){
+                if(buckets.get(b).isEmpty()) continue;
+
+                Entry winner = race(BUCKETS[b], buckets.get(b), pool);
+                if(winner.nbSolved() == 0) {
+                    System.out.println(String.format("%s: nothing solved within the cutoff", BUCKETS[b]));
+                }
+                else {
+                    System.out.println(String.format("%s: %s, median %s, solved %d of %d",
+                        BUCKETS[b], winner.config, format(winner.median()), winner.nbSolved(), winner.times.size()));
+                }
+            }
+        }
+        finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static int bucketOf(Sudoku sudoku) {
+        double empty = (double) sudoku.getEmptyCount() / sudoku.size();
+        int bucket = 0;
+        while(bucket < BUCKET_BOUNDS.length && empty >= BUCKET_BOUNDS[bucket]){
+            bucket++;
+        }
+        return bucket;
+    }
+
+    private Entry race(String bucket, List<int[]> puzzles, ExecutorService pool) throws Exception {
+        List<int[]> order = new ArrayList<>(puzzles);
+        Collections.shuffle(order, new Random(42)); // blocks mix the corpus, the same way on every run
+
+        List<Entry> alive = new ArrayList<>();
+        for(Config config : configurations()){
+            alive.add(new Entry(config));
+        }
+        Comparator<Entry> byMedian = Comparator.comparingLong(Entry::median).thenComparing(Comparator.comparingInt(Entry::nbSolved).reversed());
+
+        for(int from = 0; from < order.size() && alive.size() > 1; from += blockSize){
+            List<int[]> block = order.subList(from, Math.min(from + blockSize, order.size()));
+
+            List<List<Future<Long>>> results = new ArrayList<>();
+            for(Entry entry : alive){
+                List<Future<Long>> times = new ArrayList<>();
+                for(int[] grid : block){
+                    times.add(pool.submit(() -> solve(entry.config, grid)));
+                }
+                results.add(times);
+            }
+            for(int e = 0; e < alive.size(); e++){
+                for(Future<Long> time : results.get(e)){
+                    alive.get(e).times.add(time.get());
+                }
+            }
+
+            alive.sort(byMedian);
+            System.err.println(String.format("%s, %d puzzles: %d configurations, leader %s at %s",
+                bucket, alive.get(0).times.size(), alive.size(), alive.get(0).config, format(alive.get(0).median())));
+            alive = new ArrayList<>(alive.subList(0, (alive.size() + 1) / 2));
+        }
+
+        alive.sort(byMedian);
+        return alive.get(0);
+    }
+
+    // time to solution in nanoseconds, or UNSOLVED if the configuration gave up
+    private long solve(Config config, int[] grid) {
+        Sudoku sudoku = new Sudoku(grid);
+        long start = System.nanoTime();
+        Sudoku solution = config.newGenie(cutoffMillis).solve(sudoku);
+        long time = System.nanoTime() - start;
+        return solution != null && solution.validate() ? time : UNSOLVED;
+    }
+
+    private static String format(long nanos) {
+        return nanos == UNSOLVED ? "unsolved" : String.format("%.1f ms", nanos / 1e6);
+    }
+
+}
@@ -0,0 +1,85 @@
+package bench;
+
+import java.util.SplittableRandom;
+
+/**
+ * Reproducible puzzles for the benchmarks. A solved grid of the requested size is built from the
+ * usual shifted-rows pattern, shuffled with validity-preserving transforms (digit relabelling,
+ * row swaps within bands, column swaps within stacks) and then a difficulty-dependent share of its
+ * cells is blanked. The puzzles need not have a unique solution; they only need to be realistic
+ * inputs of a known size and density.
+ */
+public final class Fixtures {
+
+    private Fixtures() {}
+
+    /** Share of cells blanked for a difficulty name. */
+    public static double blankRate(String difficulty) {
+        switch (difficulty) {
+            case "easy":
+                return 0.45;
+            case "medium":
+                return 0.55;
+            case "hard":
+                return 0.65;
+            default:
+                throw new IllegalArgumentException("Unknown difficulty: " + difficulty);
+        }
+    }
+
+    public static int[] puzzle(int boxLength, String difficulty, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        int[] grid = solved(boxLength, random);
+
+        double rate = blankRate(difficulty);
+        for (int i = 0; i < grid.length; i++) {
+            if (random.nextDouble() < rate) grid[i] = 0;
+        }
+        return grid;
+    }
+
+    public static int[] solved(int boxLength, SplittableRandom random) {
+        int n = boxLength * boxLength;
+
+        int[] digits = permutation(n, random);
+        int[] rows = bandPermutation(boxLength, random);
+        int[] columns = bandPermutation(boxLength, random);
+
+        int[] grid = new int[n * n];
+        for (int r = 0; r < n; r++) {
+            for (int c = 0; c < n; c++) {
+                int row = rows[r];
+                int column = columns[c];
+                int pattern = ((row % boxLength) * boxLength + (row / boxLength) + column) % n;
+                grid[(r * n) + c] = digits[pattern] + 1;
+            }
+        }
+        return grid;
+    }
+
+    // shuffles bands and the lines within each band
+    private static int[] bandPermutation(int boxLength, SplittableRandom random) {
+        int[] bands = permutation(boxLength, random);
+        int[] lines = new int[boxLength * boxLength];
+        for (int b = 0; b < boxLength; b++) {
+            int[] within = permutation(boxLength, random);
+            for (int k = 0; k < boxLength; k++) {
+                lines[(b * boxLength) + k] = (bands[b] * boxLength) + within[k];
+            }
+        }
+        return lines;
+    }
+
+    private static int[] permutation(int n, SplittableRandom random) {
+        int[] p = new int[n];
+        for (int i = 0; i < n; i++) p[i] = i;
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = p[i];
+            p[i] = p[j];
+            p[j] = tmp;
+        }
+        return p;
+    }
+
+}
@@ -0,0 +1,76 @@
+package bench;
+
+import game.Sudoku;
+import jeans.Arena;
+import jeans.Genie;
+import jeans.Selection;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/** GA operators on a population of box-filled individuals, run on the calling thread. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GenieBenchmark {
+
+    @Param({"2", "3", "4"})
+    public int boxLength;
+
+    @Param({"easy", "hard"})
+    public String difficulty;
+
+    @Param({"1000"})
+    public int populationSize;
+
+    @Param({"truncation", "tournament", "rank", "sus"})
+    public String selection;
+
+    private Genie genie;
+    private Arena population;
+
+    @Setup
+    public void setup() {
+        genie = new Genie(populationSize, 0.3, 0.3, 10, 1000, 30, null);
+        genie.setSelection(Selection.byName(selection));
+        population = genie.newArena(new Sudoku(Fixtures.puzzle(boxLength, difficulty, 42)));
+        genie.createGeneration(population);
+        genie.sortByScore(population);
+        genie.getSelection().prepare(population);
+    }
+
+    /** One parent draw from the sorted population. */
+    @Benchmark
+    public int select() {
+        return genie.getSelection().select(population);
+    }
+
+    /** Crossover of two parents into one run of 10 children. */
+    @Benchmark
+    public Arena mate() {
+        genie.mate(population, population.ranked(0), population.ranked(1), 0, 10);
+        return population;
+    }
+
+    /** Select, mate, mutate and sort: everything solveGA does per generation. */
+    @Benchmark
+    public Arena generation() {
+        genie.nextGeneration(population, 0);
+        genie.sortByScore(population);
+        return population;
+    }
+
+}
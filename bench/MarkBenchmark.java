@@ -0,0 +1,45 @@
+package bench;
+
+import game.Sudoku;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/** Mark.mark as run by the Sudoku constructor, which does nothing else but copy the givens. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MarkBenchmark {
+
+    @Param({"2", "3", "4", "5", "6"})
+    public int boxLength;
+
+    @Param({"easy", "hard"})
+    public String difficulty;
+
+    private int[] puzzle;
+
+    @Setup
+    public void setup() {
+        puzzle = Fixtures.puzzle(boxLength, difficulty, 42);
+    }
+
+    @Benchmark
+    public Sudoku mark() {
+        return new Sudoku(puzzle);
+    }
+
+}
@@ -0,0 +1,63 @@
+package bench;
+
+import game.Sudoku;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import solver.Solver;
+import solver.Solvers;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A whole solve, marking included, as grids grow. Each invocation solves the next of a fixed set
+ * of puzzles, so the score is an average over puzzles rather than the time of one lucky seed.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SolverBenchmark {
+
+    private static final int NB_PUZZLES = 8;
+
+    @Param({"3", "4", "5"})
+    public int boxLength;
+
+    @Param({"medium", "hard"})
+    public String difficulty;
+
+    @Param({"backtrack"})
+    public String solver;
+
+    private int[][] puzzles;
+    private Solver engine;
+    private int next = 0;
+
+    @Setup
+    public void setup() {
+        puzzles = new int[NB_PUZZLES][];
+        for (int i = 0; i < NB_PUZZLES; i++) {
+            puzzles[i] = Fixtures.puzzle(boxLength, difficulty, i);
+        }
+        engine = Solvers.byName(solver);
+    }
+
+    @Benchmark
+    public Sudoku solve() {
+        Sudoku puzzle = new Sudoku(puzzles[next]);
+        next = (next + 1) % NB_PUZZLES;
+        return puzzle.validate() ? puzzle : engine.solve(puzzle);
+    }
+
+}
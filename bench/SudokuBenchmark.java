@@ -0,0 +1,73 @@
+package bench;
+
+import game.Sudoku;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/** Per-individual operations of the GA, on a box-filled individual like those in a population. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SudokuBenchmark {
+
+    @Param({"2", "3", "4", "5", "6"})
+    public int boxLength;
+
+    @Param({"easy", "hard"})
+    public String difficulty;
+
+    private Sudoku individual;
+
+    @Setup
+    public void setup() {
+        individual = new Sudoku(Fixtures.puzzle(boxLength, difficulty, 42)).fillBoxes();
+    }
+
+    @Benchmark
+    public int getScore() {
+        return individual.getScore();
+    }
+
+    /** Scoring from scratch, one Group.numDuplicates per row, column and box. */
+    @Benchmark
+    public int numDuplicates() {
+        int s = 0;
+        for (int i = 0; i < individual.getGroupSize(); i++) {
+            s += individual.getBox(i).numDuplicates();
+            s += individual.getRow(i).numDuplicates();
+            s += individual.getColumn(i).numDuplicates();
+        }
+        return s;
+    }
+
+    @Benchmark
+    public int swap2() {
+        individual.getBox(0).swap2();
+        return individual.getScore();
+    }
+
+    @Benchmark
+    public int mutate() {
+        return individual.mutate(0.5).getScore();
+    }
+
+    @Benchmark
+    public Sudoku copyLocked() {
+        return individual.copyLocked();
+    }
+
+}
@@ -0,0 +1,328 @@
+package cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A puzzle in canonical form, with the transform that took it there. Two puzzles that differ by
+ * relabelling digits, swapping rows within a band or columns within a stack, swapping bands or
+ * stacks, or transposing have the same form, so a solution found for one serves the other.
+ *
+ * The form is the smallest grid, read row by row with digits relabelled in order of first
+ * appearance, among a few candidate arrangements. The candidates are fixed by invariants that
+ * no transform changes: bands, rows, stacks and columns are sorted by the givens they hold, how
+ * many givens their crossing lines hold and how often each given digit occurs, and only lines
+ * with equal keys are tried in every order, in both orientations. When ties leave more than
+ * MAX_CANDIDATES arrangements, of() gives up rather than spend more than a solve would.
+ */
+public final class Canonical {
+
+    /** Arrangements tried per orientation before giving up. */
+    public static final int MAX_CANDIDATES = 4096;
+
+    private final int groupSize;
+    private final boolean transposed;
+    // canonical row i is row rows[i] of the (transposed, if so) input; likewise columns
+    private final int[] rows;
+    private final int[] columns;
+    // canonical digit of every input digit, and back
+    private final int[] labels;
+    private final int[] digits;
+    private final byte[] form;
+
+    private Canonical(int groupSize, boolean transposed, int[] rows, int[] columns, int[] labels, byte[] form) {
+        this.groupSize = groupSize;
+        this.transposed = transposed;
+        this.rows = rows;
+        this.columns = columns;
+        this.labels = labels;
+        this.form = form;
+
+        this.digits = new int[labels.length];
+        for(int d = 1; d < labels.length; d++){
+            this.digits[labels[d]] = d;
+        }
+    }
+
+    /** The canonical form of the grid (0 for blanks), or null if too many arrangements tie to choose between them. */
+    public static Canonical of(int[] grid) {
+        int groupSize = (int) Math.sqrt(grid.length);
+        int boxLength = (int) Math.sqrt(groupSize);
+        if(boxLength * boxLength != groupSize || groupSize * groupSize != grid.length) throw new IllegalArgumentException("Not a grid: " + grid.length + " cells");
+
+        Search search = new Search(grid, groupSize, boxLength);
+        if(!search.run(false) || !search.run(true)) return null;
+        return new Canonical(groupSize, search.bestTransposed, search.bestRows, search.bestColumns, search.bestLabels, search.best);
+    }
+
+    /** The canonical grid, one value per cell. Do not modify. */
+    public byte[] getForm() {
+        return this.form;
+    }
+
+    /** Applies this transform to a grid of the same shape as the input, such as its solution. */
+    public byte[] toCanonical(int[] grid) {
+        byte[] out = new byte[grid.length];
+        for(int i = 0; i < this.groupSize; i++){
+            for(int j = 0; j < this.groupSize; j++){
+                int v = grid[this.inputCell(this.rows[i], this.columns[j])];
+                out[(i * this.groupSize) + j] = (byte) (v == 0 ? 0 : this.labels[v]);
+            }
+        }
+        return out;
+    }
+
+    /** Undoes this transform: the input-shaped grid whose canonical form is the given one. */
+    public int[] fromCanonical(byte[] canonical) {
+        int[] out = new int[canonical.length];
+        for(int i = 0; i < this.groupSize; i++){
+            for(int j = 0; j < this.groupSize; j++){
+                int v = canonical[(i * this.groupSize) + j];
+                out[this.inputCell(this.rows[i], this.columns[j])] = v == 0 ? 0 : this.digits[v];
+            }
+        }
+        return out;
+    }
+
+    private int inputCell(int row, int column) {
+        return this.transposed ? (column * this.groupSize) + row : (row * this.groupSize) + column;
+    }
+
+    // finds the smallest arrangement over both orientations
+    private static final class Search {
+        final int[] grid;
+        final int groupSize;
+        final int boxLength;
+
+        byte[] best;
+        boolean bestTransposed;
+        int[] bestRows;
+        int[] bestColumns;
+        int[] bestLabels;
+
+        // scratch for one candidate
+        final byte[] candidate;
+        final int[] labels;
+        final int[] rows;
+        final int[] columns;
+
+        Search(int[] grid, int groupSize, int boxLength) {
+            this.grid = grid;
+            this.groupSize = groupSize;
+            this.boxLength = boxLength;
+            this.candidate = new byte[grid.length];
+            this.labels = new int[groupSize + 1];
+            this.rows = new int[groupSize];
+            this.columns = new int[groupSize];
+        }
+
+        int value(boolean transposed, int row, int column) {
+            return this.grid[transposed ? (column * this.groupSize) + row : (row * this.groupSize) + column];
+        }
+
+        // tries every arrangement allowed by the invariants in one orientation; false if there are too many
+        boolean run(boolean transposed) {
+            int n = this.boxLength;
+            int size = this.groupSize;
+
+            int[] frequency = new int[size + 1];
+            int[] rowCounts = new int[size];
+            int[] columnCounts = new int[size];
+            for(int r = 0; r < size; r++){
+                for(int c = 0; c < size; c++){
+                    int v = this.value(transposed, r, c);
+                    if(v == 0) continue;
+                    frequency[v]++;
+                    rowCounts[r]++;
+                    columnCounts[c]++;
+                }
+            }
+
+            // a line's key: its givens, each described by the crossing line's count and its digit's frequency, sorted
+            int[][] rowKeys = new int[size][];
+            int[][] columnKeys = new int[size][];
+            for(int line = 0; line < size; line++){
+                int[] rowKey = new int[rowCounts[line]];
+                int[] columnKey = new int[columnCounts[line]];
+                int nbRow = 0;
+                int nbColumn = 0;
+                for(int k = 0; k < size; k++){
+                    int inRow = this.value(transposed, line, k);
+                    if(inRow != 0) rowKey[nbRow++] = (columnCounts[k] * (size + 1)) + frequency[inRow];
+                    int inColumn = this.value(transposed, k, line);
+                    if(inColumn != 0) columnKey[nbColumn++] = (rowCounts[k] * (size + 1)) + frequency[inColumn];
+                }
+                Arrays.sort(rowKey);
+                Arrays.sort(columnKey);
+                rowKeys[line] = rowKey;
+                columnKeys[line] = columnKey;
+            }
+
+            List<int[]> runs = new ArrayList<>(); // {group index, from, to} of lines that tie
+            int[][] rowGroups = new int[n + 1][];
+            int[][] columnGroups = new int[n + 1][];
+            rowGroups[n] = orderBlocks(rowKeys, n, rowGroups, runs, 0);
+            columnGroups[n] = orderBlocks(columnKeys, n, columnGroups, runs, n + 1);
+
+            long nbCandidates = 1;
+            for(int[] run : runs){
+                for(int k = 2; k <= run[2] - run[1]; k++){
+                    nbCandidates *= k;
+                    if(nbCandidates > MAX_CANDIDATES) return false;
+                }
+            }
+
+            int[][] groups = new int[(2 * n) + 2][];
+            System.arraycopy(rowGroups, 0, groups, 0, n + 1);
+            System.arraycopy(columnGroups, 0, groups, n + 1, n + 1);
+
+            // an odometer over the permutations of every run, each starting sorted
+            do {
+                this.evaluate(transposed, groups, n);
+            } while(nextArrangement(groups, runs));
+            return true;
+        }
+
+        // sorts the lines of each block, then the blocks, by key; fills groups[0..n) with each block's lines and returns the block order
+        private static int[] orderBlocks(int[][] keys, int n, int[][] groups, List<int[]> runs, int offset) {
+            int[][] blockKeys = new int[n][];
+            for(int b = 0; b < n; b++){
+                int[] lines = new int[n];
+                int length = 0;
+                for(int k = 0; k < n; k++){
+                    lines[k] = (b * n) + k;
+                    length += keys[lines[k]].length + 1;
+                }
+                sortByKey(lines, keys);
+                groups[b] = lines;
+
+                blockKeys[b] = new int[length];
+                int at = 0;
+                for(int k = 0; k < n; k++){
+                    int[] key = keys[lines[k]];
+                    blockKeys[b][at++] = key.length;
+                    System.arraycopy(key, 0, blockKeys[b], at, key.length);
+                    at += key.length;
+                }
+                addRuns(groups[b], keys, offset + b, runs);
+            }
+
+            int[] order = new int[n];
+            for(int b = 0; b < n; b++){
+                order[b] = b;
+            }
+            sortByKey(order, blockKeys);
+
+            // blocks are permuted by their index, so their runs compare block keys
+            int from = 0;
+            for(int k = 1; k <= n; k++){
+                if(k == n || Arrays.compare(blockKeys[order[k]], blockKeys[order[from]]) != 0) {
+                    if(k - from > 1) {
+                        Arrays.sort(order, from, k);
+                        runs.add(new int[]{offset + n, from, k});
+                    }
+                    from = k;
+                }
+            }
+            return order;
+        }
+
+        // insertion sort of indices by their keys; there are at most a handful, and it spares boxing them
+        private static void sortByKey(int[] indices, int[][] keys) {
+            for(int i = 1; i < indices.length; i++){
+                int index = indices[i];
+                int j = i - 1;
+                while(j >= 0 && Arrays.compare(keys[indices[j]], keys[index]) > 0) {
+                    indices[j + 1] = indices[j];
+                    j--;
+                }
+                indices[j + 1] = index;
+            }
+        }
+
+        // records the runs of equal keys in a sorted group, each sorted by line index so permutations start from the first
+        private static void addRuns(int[] group, int[][] keys, int groupIndex, List<int[]> runs) {
+            int from = 0;
+            for(int k = 1; k <= group.length; k++){
+                if(k == group.length || Arrays.compare(keys[group[k]], keys[group[from]]) != 0) {
+                    if(k - from > 1) {
+                        Arrays.sort(group, from, k);
+                        runs.add(new int[]{groupIndex, from, k});
+                    }
+                    from = k;
+                }
+            }
+        }
+
+        private static boolean nextArrangement(int[][] groups, List<int[]> runs) {
+            for(int[] run : runs){
+                if(nextPermutation(groups[run[0]], run[1], run[2])) return true;
+                // this run wrapped around to sorted order; carry into the next one
+            }
+            return false;
+        }
+
+        // the next lexicographic permutation of a[from, to), or false after sorting it back if it was the last
+        private static boolean nextPermutation(int[] a, int from, int to) {
+            int i = to - 2;
+            while(i >= from && a[i] >= a[i + 1]) i--;
+            if(i < from) {
+                Arrays.sort(a, from, to);
+                return false;
+            }
+            int j = to - 1;
+            while(a[j] <= a[i]) j--;
+            int t = a[i];
+            a[i] = a[j];
+            a[j] = t;
+            Arrays.sort(a, i + 1, to);
+            return true;
+        }
+
+        // builds the candidate given by the current group orders and keeps it if it is the smallest so far
+        private void evaluate(boolean transposed, int[][] groups, int n) {
+            int size = this.groupSize;
+            int[] bandOrder = groups[n];
+            int[] stackOrder = groups[(2 * n) + 1];
+            for(int i = 0; i < n; i++){
+                System.arraycopy(groups[bandOrder[i]], 0, this.rows, i * n, n);
+                System.arraycopy(groups[n + 1 + stackOrder[i]], 0, this.columns, i * n, n);
+            }
+
+            Arrays.fill(this.labels, 0);
+            int nextLabel = 1;
+            boolean smaller = this.best == null;
+            for(int i = 0; i < size; i++){
+                for(int j = 0; j < size; j++){
+                    int v = this.value(transposed, this.rows[i], this.columns[j]);
+                    int label = 0;
+                    if(v != 0) {
+                        if(this.labels[v] == 0) this.labels[v] = nextLabel++;
+                        label = this.labels[v];
+                    }
+
+                    int cell = (i * size) + j;
+                    if(!smaller) {
+                        if(label > this.best[cell]) return;
+                        if(label < this.best[cell]) smaller = true;
+                    }
+                    this.candidate[cell] = (byte) label;
+                }
+            }
+            if(!smaller) return; // equal to the best; keep the first
+
+            // digits absent from the grid take the labels left, in order
+            for(int d = 1; d <= size; d++){
+                if(this.labels[d] == 0) this.labels[d] = nextLabel++;
+            }
+
+            this.best = this.candidate.clone();
+            this.bestTransposed = transposed;
+            this.bestRows = this.rows.clone();
+            this.bestColumns = this.columns.clone();
+            this.bestLabels = this.labels.clone();
+        }
+    }
+
+}
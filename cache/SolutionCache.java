@@ -0,0 +1,130 @@
+package cache;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Solutions by canonical form, so a puzzle is answered without marking or solving when any
+ * puzzle of its equivalence class was solved before: the cached solution is stored in canonical
+ * form and mapped back through the new puzzle's own transform.
+ *
+ * The least recently used entries are evicted once the estimated size of all entries passes the
+ * capacity, which bounds memory whatever the grid sizes. Only solved puzzles are cached.
+ * Any number of threads may use one cache; lookups hold its lock for a map access only.
+ */
+public final class SolutionCache {
+
+    // estimated bytes per entry on top of the two grids: key, node and array headers
+    private static final int ENTRY_OVERHEAD = 96;
+
+    private final long capacityBytes;
+    private final LinkedHashMap<Key, byte[]> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long sizeBytes = 0;
+
+    private final AtomicLong nbHits = new AtomicLong();
+    private final AtomicLong nbMisses = new AtomicLong();
+    private final AtomicLong nbBypassed = new AtomicLong();
+
+    public SolutionCache(long capacityBytes) {
+        this.capacityBytes = capacityBytes;
+    }
+
+    /** The canonical form of the grid, or null if it cannot be had cheaply, in which case get() and put() pass it by. */
+    public Canonical canonicalize(int[] grid) {
+        Canonical canonical = Canonical.of(grid);
+        if(canonical == null) this.nbBypassed.incrementAndGet();
+        return canonical;
+    }
+
+    /** The solution of an equivalent puzzle, mapped onto the one the canonical form came from, or null. */
+    public int[] get(Canonical canonical) {
+        if(canonical == null) return null;
+
+        byte[] solution;
+        synchronized(this) {
+            solution = this.entries.get(new Key(canonical.getForm()));
+        }
+        if(solution == null) {
+            this.nbMisses.incrementAndGet();
+            return null;
+        }
+        this.nbHits.incrementAndGet();
+        return canonical.fromCanonical(solution);
+    }
+
+    /** Remembers the solution of the puzzle the canonical form came from. */
+    public void put(Canonical canonical, int[] solution) {
+        if(canonical == null) return;
+
+        Key key = new Key(canonical.getForm());
+        byte[] value = canonical.toCanonical(solution);
+        long bytes = key.form.length + value.length + ENTRY_OVERHEAD;
+        if(bytes > this.capacityBytes) return;
+
+        synchronized(this) {
+            byte[] previous = this.entries.put(key, value);
+            if(previous != null) {
+                this.sizeBytes -= key.form.length + previous.length + ENTRY_OVERHEAD;
+            }
+            this.sizeBytes += bytes;
+
+            Iterator<Map.Entry<Key, byte[]>> eldest = this.entries.entrySet().iterator();
+            while(this.sizeBytes > this.capacityBytes) {
+                Map.Entry<Key, byte[]> entry = eldest.next();
+                this.sizeBytes -= entry.getKey().form.length + entry.getValue().length + ENTRY_OVERHEAD;
+                eldest.remove();
+            }
+        }
+    }
+
+    public long getHits() {
+        return this.nbHits.get();
+    }
+
+    public long getMisses() {
+        return this.nbMisses.get();
+    }
+
+    /** Puzzles that went uncached because their canonical form was too costly to find. */
+    public long getBypassed() {
+        return this.nbBypassed.get();
+    }
+
+    public synchronized int size() {
+        return this.entries.size();
+    }
+
+    public synchronized long sizeBytes() {
+        return this.sizeBytes;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("cache hits=%d misses=%d bypassed=%d entries=%d bytes=%d",
+            this.getHits(), this.getMisses(), this.getBypassed(), this.size(), this.sizeBytes());
+    }
+
+    private static final class Key {
+        final byte[] form;
+        final int hash;
+
+        Key(byte[] form) {
+            this.form = form;
+            this.hash = Arrays.hashCode(form);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && ((Key) o).hash == this.hash && Arrays.equals(((Key) o).form, this.form);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+    }
+
+}
@@ -0,0 +1,179 @@
+package format;
+
+import game.Cell;
+import game.Sudoku;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Text grids on a single line, in one of two layouts, told apart by the length of the line:
+ *
+ * Compact: one character per cell, '.' or '0' for a blank, '1'-'9' then 'A'-'Z' then 'a'-'z' for
+ * 1 to 61. This is the usual 81-character format for 9 x 9, and the common 1-9A-G one for 16 x 16.
+ *
+ * Wide: every cell takes as many characters as the largest digit has decimal digits, right
+ * aligned and padded with spaces or zeros, blank when the field is only '.', '0' or spaces.
+ * A 16 x 16 line is 512 characters, 25 x 25 is 1250 and 36 x 36 is 2592.
+ *
+ * Readers work straight from a CharSequence or a ByteBuffer and writers append to a StringBuilder
+ * or a ByteBuffer, one primitive per cell, with no intermediate strings.
+ */
+public final class LineFormat {
+
+    private static final int MAX_BOX_LENGTH = 8;
+    private static final int MAX_COMPACT = 61;
+
+    private LineFormat() {}
+
+    /**
+     * The error,message line that stands in for a result that could not be had. The message is kept to one
+     * field of one line, commas and line breaks becoming spaces; a failure with no message gives its class name.
+     */
+    public static String error(Throwable failure) {
+        String message = failure.getMessage() != null ? failure.getMessage() : failure.getClass().getSimpleName();
+        return "error," + message.replace(',', ' ').replace('\r', ' ').replace('\n', ' ');
+    }
+
+    /** The cell values of a line (0 for blank). Throws IllegalArgumentException on anything else. */
+    public static int[] parse(CharSequence line) {
+        int length = line.length();
+        int width = width(length);
+        int[] grid = new int[length / width];
+
+        for(int i = 0; i < grid.length; i++){
+            int v = 0;
+            for(int k = i * width; k < (i + 1) * width; k++){
+                v = accumulate(v, line.charAt(k), width);
+            }
+            grid[i] = check(v, grid.length);
+        }
+        return grid;
+    }
+
+    /** The cell values of the length bytes of the buffer starting at its position, which is moved past them. */
+    public static int[] parse(ByteBuffer buffer, int length) {
+        int width = width(length);
+        int[] grid = new int[length / width];
+
+        for(int i = 0; i < grid.length; i++){
+            int v = 0;
+            for(int k = 0; k < width; k++){
+                v = accumulate(v, (char) (buffer.get() & 0xff), width);
+            }
+            grid[i] = check(v, grid.length);
+        }
+        return grid;
+    }
+
+    /** Appends the grid in the compact layout if its digits fit one character, otherwise in the wide one. */
+    public static StringBuilder write(int[] grid, StringBuilder out) {
+        int groupSize = (int) Math.sqrt(grid.length);
+        int width = groupSize <= MAX_COMPACT ? 1 : digits(groupSize);
+        for(int v : grid){
+            appendCell(v, width, out);
+        }
+        return out;
+    }
+
+    public static StringBuilder write(Sudoku sudoku, StringBuilder out) {
+        int width = sudoku.getGroupSize() <= MAX_COMPACT ? 1 : digits(sudoku.getGroupSize());
+        for(int i = 0; i < sudoku.size(); i++){
+            appendCell(sudoku.get(i), width, out);
+        }
+        return out;
+    }
+
+    /** Appends the grid in the wide layout, whatever its size. */
+    public static StringBuilder writeWide(int[] grid, StringBuilder out) {
+        int width = digits((int) Math.sqrt(grid.length));
+        for(int v : grid){
+            appendCell(v, width, out);
+        }
+        return out;
+    }
+
+    /** Puts the grid in the compact layout if its digits fit one character, otherwise in the wide one, as ASCII. */
+    public static ByteBuffer write(int[] grid, ByteBuffer out) {
+        int groupSize = (int) Math.sqrt(grid.length);
+        int width = groupSize <= MAX_COMPACT ? 1 : digits(groupSize);
+        for(int v : grid){
+            if(width == 1) {
+                out.put((byte) symbol(v));
+                continue;
+            }
+            for(int k = width - 1; k >= 0; k--){
+                out.put((byte) (v == Cell.EMPTY ? (k == 0 ? '.' : ' ') : decimalDigit(v, k)));
+            }
+        }
+        return out;
+    }
+
+    /** The compact character for a value, '.' for blank. */
+    public static char symbol(int value) {
+        if(value == Cell.EMPTY) return '.';
+        if(value <= 9) return (char) ('0' + value);
+        if(value <= 35) return (char) ('A' + value - 10);
+        if(value <= MAX_COMPACT) return (char) ('a' + value - 36);
+        throw new IllegalArgumentException("No single character for " + value);
+    }
+
+    /** The value of a compact character, 0 for blank, or -1 if it is not one. */
+    public static int value(char c) {
+        if(c == '.' || c == '0') return 0;
+        if(c >= '1' && c <= '9') return c - '0';
+        if(c >= 'A' && c <= 'Z') return c - 'A' + 10;
+        if(c >= 'a' && c <= 'z') return c - 'a' + 36;
+        return -1;
+    }
+
+    // characters per cell for a line of this length: 1 for compact, otherwise the wide width that makes a whole grid
+    private static int width(int length) {
+        for(int boxLength = 1; boxLength <= MAX_BOX_LENGTH; boxLength++){
+            int groupSize = boxLength * boxLength;
+            int cells = groupSize * groupSize;
+            if(length == cells) return 1;
+            if(length == cells * digits(groupSize)) return digits(groupSize);
+        }
+        throw new IllegalArgumentException("A line of " + length + " characters is not a grid");
+    }
+
+    private static int accumulate(int v, char c, int width) {
+        if(width == 1) {
+            int value = value(c);
+            if(value < 0) throw new IllegalArgumentException("Unexpected character '" + c + "' in puzzle line");
+            return value;
+        }
+        if(c == ' ' || c == '.') return v * 10;
+        if(c >= '0' && c <= '9') return (v * 10) + (c - '0');
+        throw new IllegalArgumentException("Unexpected character '" + c + "' in puzzle line");
+    }
+
+    private static int check(int v, int cells) {
+        if(v * v > cells) throw new IllegalArgumentException("Value " + v + " is too large for the grid");
+        return v;
+    }
+
+    private static void appendCell(int v, int width, StringBuilder out) {
+        if(width == 1) {
+            out.append(symbol(v));
+            return;
+        }
+        for(int k = width - 1; k >= 0; k--){
+            out.append(v == Cell.EMPTY ? (k == 0 ? '.' : ' ') : decimalDigit(v, k));
+        }
+    }
+
+    // the k-th decimal digit of v from the right, or a space where v has fewer digits
+    private static char decimalDigit(int v, int k) {
+        int p = 1;
+        for(int i = 0; i < k; i++){
+            p *= 10;
+        }
+        return v < p && k > 0 ? ' ' : (char) ('0' + ((v / p) % 10));
+    }
+
+    static int digits(int v) {
+        return v < 10 ? 1 : 1 + digits(v / 10);
+    }
+
+}
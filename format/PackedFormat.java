@@ -0,0 +1,79 @@
+package format;
+
+import game.Sudoku;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A binary record per grid for bulk storage: one byte holding the box length, then every cell
+ * value in as few bits as the largest digit needs (4 for 9 x 9, 5 for 16 x 16 and 25 x 25,
+ * 6 for 36 x 36), least significant bits first, padded to a whole byte. A 9 x 9 grid takes 42
+ * bytes against 82 for a text line. Records can simply be concatenated.
+ */
+public final class PackedFormat {
+
+    private PackedFormat() {}
+
+    public static int bitsPerCell(int groupSize) {
+        return 32 - Integer.numberOfLeadingZeros(groupSize);
+    }
+
+    /** Bytes taken by the record of a grid with the given box length, header included. */
+    public static int recordLength(int boxLength) {
+        int groupSize = boxLength * boxLength;
+        return 1 + (((groupSize * groupSize * bitsPerCell(groupSize)) + 7) / 8);
+    }
+
+    public static ByteBuffer write(int[] grid, ByteBuffer out) {
+        int groupSize = (int) Math.sqrt(grid.length);
+        int bits = bitsPerCell(groupSize);
+        out.put((byte) Math.sqrt(groupSize));
+
+        long pending = 0;
+        int nbPending = 0;
+        for(int v : grid){
+            pending |= (long) v << nbPending;
+            nbPending += bits;
+            while(nbPending >= 8) {
+                out.put((byte) pending);
+                pending >>>= 8;
+                nbPending -= 8;
+            }
+        }
+        if(nbPending > 0) out.put((byte) pending);
+        return out;
+    }
+
+    public static ByteBuffer write(Sudoku sudoku, ByteBuffer out) {
+        return write(sudoku.toIntArray(), out);
+    }
+
+    /** The next grid of the buffer, or null if the buffer has nothing left. */
+    public static int[] read(ByteBuffer in) {
+        if(!in.hasRemaining()) return null;
+
+        int boxLength = in.get();
+        if(boxLength < 1 || boxLength > 8) throw new IllegalArgumentException("Bad box length " + boxLength + " in packed grid");
+
+        int groupSize = boxLength * boxLength;
+        int bits = bitsPerCell(groupSize);
+        int mask = (1 << bits) - 1;
+        int[] grid = new int[groupSize * groupSize];
+
+        long pending = 0;
+        int nbPending = 0;
+        for(int i = 0; i < grid.length; i++){
+            while(nbPending < bits) {
+                pending |= (long) (in.get() & 0xff) << nbPending;
+                nbPending += 8;
+            }
+            int v = (int) (pending & mask);
+            if(v > groupSize) throw new IllegalArgumentException("Value " + v + " is too large for the grid");
+            grid[i] = v;
+            pending >>>= bits;
+            nbPending -= bits;
+        }
+        return grid;
+    }
+
+}
@@ -1,75 +1,75 @@
 package game;
 
-import lombok.Data;
-
-@Data
+/**
+ * A lightweight view of one square of a Sudoku. All state lives in the Sudoku's primitive arrays,
+ * so a Cell is only a (sudoku, index) pair and is safe to create and throw away.
+ */
 public class Cell {
 
-    public static Integer MIN_VALUE = 1; // Should always be 1
+    public static final int MIN_VALUE = 1; // Should always be 1
+    public static final int EMPTY = 0;
 
-    private Boolean isGiven;
-    private Boolean isMarked = Boolean.FALSE;
+    private final Sudoku sudoku;
+    private final int index;
 
-    private Integer value;
+    public Cell(Sudoku sudoku, int index){
+        this.sudoku = sudoku;
+        this.index = index;
+    }
 
-    private Integer index;
-    private Integer columnPosition;
-    private Integer rowPosition;
-    private Integer boxPosition;
+    public void markValue(int value){
+        this.sudoku.mark(this.index, value);
+    }
 
-    private Integer maxValue;
+    public void setValue(int value){
+        this.sudoku.set(this.index, value);
+    }
 
-    public Cell(Integer maxValue, Integer value, Integer index){
-        this.value = value == null || value > maxValue || value < Cell.MIN_VALUE ? null : value;
-        this.isGiven = this.value != null;
-        this.maxValue = maxValue;
-        this.setPosition(index);
+    public int getValue(){
+        return this.sudoku.get(this.index);
     }
 
-    public void markValue(Integer value){
-        if(this.isGiven.equals(Boolean.TRUE)) return;
-        this.value = value;
-        this.isMarked = Boolean.TRUE;
+    public boolean isEmpty(){
+        return this.getValue() == EMPTY;
     }
 
-    public void setValue(Integer value){
-        if(this.isGiven.equals(Boolean.TRUE)) return;
-        this.value = value;
+    public boolean isGiven(){
+        return this.sudoku.isGiven(this.index);
     }
 
-    public Integer getValue(){
-        return this.value;
+    public boolean isMarked(){
+        return this.sudoku.isMarked(this.index);
     }
 
-    public Boolean isLocked(){
-        return this.isGiven || this.isMarked;
+    public boolean isLocked(){
+        return this.sudoku.isLocked(this.index);
     }
 
-    public Boolean validate () {
+    public boolean validate () {
         // MIN VALUE = 1
         // MAX VALUE = GROUP_SIZE
-        return this.value != null && this.value >= 1 && this.value <= this.maxValue;
+        int value = this.getValue();
+        return value >= MIN_VALUE && value <= this.sudoku.getGroupSize();
     }
 
-    public void setPosition(Integer index){
-        this.index = index;
+    public int getIndex(){
+        return this.index;
+    }
 
-        if(index != null) {
-            this.columnPosition = index % this.maxValue;
-            this.rowPosition = index / this.maxValue;
+    public int getColumnPosition(){
+        return this.index % this.sudoku.getGroupSize();
+    }
 
-            Integer boxSize = ((Double) Math.sqrt(this.maxValue)).intValue();
+    public int getRowPosition(){
+        return this.index / this.sudoku.getGroupSize();
+    }
 
-            int x = columnPosition / boxSize;
-            int y = rowPosition / boxSize;
+    public int getBoxPosition(){
+        return this.sudoku.boxOf(this.index);
+    }
 
-            this.boxPosition = (y * boxSize) + x;
-        }
-        else {
-            this.columnPosition = null;
-            this.rowPosition = null;
-            this.boxPosition = null;
-        }
+    public Sudoku getSudoku(){
+        return this.sudoku;
     }
 
 }
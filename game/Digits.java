@@ -0,0 +1,36 @@
+package game;
+
+/**
+ * Digit sets are stored as long bitmasks where digit d (1-based) lives in bit d - 1.
+ * A long holds every digit of grids up to 64 x 64, which covers every box size we support.
+ */
+public final class Digits {
+
+    private Digits() {}
+
+    public static long bit(int digit) {
+        return 1L << (digit - 1);
+    }
+
+    public static long all(int groupSize) {
+        return groupSize == 64 ? -1L : (1L << groupSize) - 1;
+    }
+
+    public static boolean contains(long mask, int digit) {
+        return (mask & bit(digit)) != 0;
+    }
+
+    public static int count(long mask) {
+        return Long.bitCount(mask);
+    }
+
+    public static boolean isSingle(long mask) {
+        return mask != 0 && (mask & (mask - 1)) == 0;
+    }
+
+    /** Lowest digit in the mask, or Cell.EMPTY when the mask is empty. */
+    public static int first(long mask) {
+        return mask == 0 ? Cell.EMPTY : Long.numberOfTrailingZeros(mask) + 1;
+    }
+
+}
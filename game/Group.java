@@ -1,99 +1,115 @@
 package game;
 
-import lombok.Data;
-
-import java.util.*;
-
-@Data
+/**
+ * A view of one row, column or box of a Sudoku. Reads and writes go straight through to the
+ * Sudoku's primitive arrays; the group itself owns no cells, only the shared Layout index list.
+ * Each Sudoku hands out the same Group instance for the same row, column or box.
+ */
 public class Group {
 
-    private Cell[] value;
+    public enum Kind { ROW, COLUMN, BOX }
 
-    private List<Integer> asserted = new ArrayList<>();
-    private List<Integer> compliments = new ArrayList<>();
-    private Boolean isValid;
-    private Integer groupSize;
+    private final Sudoku sudoku;
+    private final Kind kind;
+    private final int position;
+    private final int groupSize;
+    private final int[] cells;
 
-    public Group(Integer groupSize){
-        this.groupSize = groupSize;
-        this.value = Arrays.stream(new Cell[this.groupSize]).toArray(Cell[]::new);
-        for(int c = Cell.MIN_VALUE; c <= groupSize; c++) {
-            this.compliments.add(c);
-        }
+    Group(Sudoku sudoku, Kind kind, int position, int[] cells){
+        this.sudoku = sudoku;
+        this.kind = kind;
+        this.position = position;
+        this.groupSize = cells.length;
+        this.cells = cells;
     }
 
-    public void setCell(Integer i, Cell c) {
-        this.value[i] = c;
-        if(c.getValue() != null) {
-            this.asserted.add(c.getValue());
-            this.compliments.remove(c.getValue());
-            this.isValid = this.validate();
-        }
+    /** Grid index of the i-th cell of this group. */
+    public int cellIndex(int i){
+        return this.cells[i];
     }
 
-    public Cell getCell(Integer i){
-        return this.value[i];
+    public Cell getCell(int i){
+        return this.sudoku.getCell(this.cellIndex(i));
     }
 
-    public Boolean contains(Integer value){
-        return this.asserted.contains(value);
+    public int getValue(int i){
+        return this.sudoku.get(this.cellIndex(i));
     }
 
-    public Boolean validate () {
-        if(this.value.length > groupSize || this.value.length < 1) throw new RuntimeException("BAD GROUPING SIZE");
+    public void setValue(int i, int value){
+        this.sudoku.set(this.cellIndex(i), value);
+    }
 
-        for (Cell c : this.value){
-            if(c == null || !c.validate()) return Boolean.FALSE;
-        }
+    public int size(){
+        return this.groupSize;
+    }
 
-        return this.numDuplicates() == 0;
+    public Kind getKind(){
+        return this.kind;
     }
 
-    public Group swap2(){
-        // Collect all Non Locked Cells in this group
-        Cell c;
-        List<Integer> nonLocked = new ArrayList<>();
-        for(int i = 0; i < this.value.length; i++){
-            c = this.value[i];
-            if(c != null && !c.isLocked()) nonLocked.add(i);
-        }
-        if(nonLocked.size() < 2) return this; // if there's less than 2, we can't swap anything
+    public int getPosition(){
+        return this.position;
+    }
 
-        Collections.shuffle(nonLocked); // shuffle for randomness
+    public Sudoku getSudoku(){
+        return this.sudoku;
+    }
 
-        // Get the index of the two that will be swapped
-        Integer i1 = nonLocked.get(0);
-        Integer i2 = nonLocked.get(1);
+    /** Digits present in this group, as a Digits mask. */
+    public long getDigits(){
+        switch (this.kind) {
+            case ROW:
+                return this.sudoku.getRowDigits(this.position);
+            case COLUMN:
+                return this.sudoku.getColumnDigits(this.position);
+            default:
+                return this.sudoku.getBoxDigits(this.position);
+        }
+    }
 
-        // clone this group so we're not manipulating it directly
-        Cell[] g = this.value.clone();
+    /** Digits missing from this group, as a Digits mask. */
+    public long getCompliments(){
+        return Digits.all(this.groupSize) & ~this.getDigits();
+    }
 
-        // cache the grid indexes of the two selected cells
-        Integer gi1 = g[i1].getIndex();
-        Integer gi2 = g[i2].getIndex();
+    public boolean contains(int value){
+        return Digits.contains(this.getDigits(), value);
+    }
 
-        // swap the two cells
-        Cell tmp = g[i1];
-        g[i1] = g[i2];
-        g[i2] = tmp;
+    /** Number of cells in this group holding the value. */
+    public int countOf(int value){
+        int count = 0;
+        for (int i = 0; i < this.groupSize; i++){
+            if(this.sudoku.get(this.cells[i]) == value) count++;
+        }
+        return count;
+    }
 
-        // set their position info based on the cached values
-        g[i1].setPosition(gi1);
-        g[i2].setPosition(gi2);
+    public boolean validate () {
+        for (int i = 0; i < this.groupSize; i++){
+            int v = this.sudoku.get(this.cells[i]);
+            if(v < Cell.MIN_VALUE || v > this.groupSize) return false;
+        }
 
-        this.value = g;
+        return this.numDuplicates() == 0;
+    }
 
+    public Group swap2(){
+        this.sudoku.swapRandom(this.cells);
         return this;
     }
 
-    public Integer numDuplicates(){
-        List<Integer> seen = new ArrayList<>();
-        Integer numDuplicates = 0;
+    public int numDuplicates(){
+        long seen = 0;
+        int numDuplicates = 0;
 
-        for (Cell c : this.value){
-            if(c == null) continue;
-            numDuplicates += seen.contains(c.getValue()) ? 1 : 0;
-            seen.add(c.getValue());
+        for (int i = 0; i < this.groupSize; i++){
+            int v = this.sudoku.get(this.cells[i]);
+            if(v == Cell.EMPTY) continue;
+            long bit = Digits.bit(v);
+            if((seen & bit) != 0) numDuplicates++;
+            seen |= bit;
         }
 
         return numDuplicates;
@@ -0,0 +1,104 @@
+package game;
+
+/**
+ * Index tables for one grid size, computed once and shared by every Sudoku of that size.
+ * Hot paths walk these arrays instead of doing division or building Group objects.
+ *
+ * Cells of a box are listed column by column, matching the order Group has always used:
+ *
+ * 0 | 3 | 6
+ * 1 | 4 | 7
+ * 2 | 5 | 8
+ *
+ * */
+public final class Layout {
+
+    private static final Layout[] LAYOUTS = new Layout[9]; // box lengths 1..8
+
+    public final int boxLength;
+    public final int groupSize;
+    public final int cellCount;
+
+    // group of each cell
+    public final int[] rowOf;
+    public final int[] columnOf;
+    public final int[] boxOf;
+
+    // cells of each group
+    public final int[][] rows;
+    public final int[][] columns;
+    public final int[][] boxes;
+
+    // rows, then columns, then boxes; unit u holds the cells of group (u % groupSize) of kind (u / groupSize)
+    public final int[][] units;
+
+    // every other cell sharing a row, column or box with the cell
+    public final int[][] peers;
+
+    private Layout(int boxLength) {
+        this.boxLength = boxLength;
+        this.groupSize = boxLength * boxLength;
+        this.cellCount = this.groupSize * this.groupSize;
+
+        this.rowOf = new int[this.cellCount];
+        this.columnOf = new int[this.cellCount];
+        this.boxOf = new int[this.cellCount];
+        this.rows = new int[this.groupSize][this.groupSize];
+        this.columns = new int[this.groupSize][this.groupSize];
+        this.boxes = new int[this.groupSize][this.groupSize];
+
+        for (int i = 0; i < this.cellCount; i++) {
+            int row = i / this.groupSize;
+            int column = i % this.groupSize;
+            int box = ((row / boxLength) * boxLength) + (column / boxLength);
+
+            this.rowOf[i] = row;
+            this.columnOf[i] = column;
+            this.boxOf[i] = box;
+
+            this.rows[row][column] = i;
+            this.columns[column][row] = i;
+            this.boxes[box][((column % boxLength) * boxLength) + (row % boxLength)] = i;
+        }
+
+        this.units = new int[3 * this.groupSize][];
+        for (int g = 0; g < this.groupSize; g++) {
+            this.units[g] = this.rows[g];
+            this.units[this.groupSize + g] = this.columns[g];
+            this.units[(2 * this.groupSize) + g] = this.boxes[g];
+        }
+
+        int peerCount = (3 * (this.groupSize - 1)) - (2 * (boxLength - 1));
+        this.peers = new int[this.cellCount][peerCount];
+        for (int i = 0; i < this.cellCount; i++) {
+            int p = 0;
+            for (int j = 0; j < this.cellCount; j++) {
+                if (j == i) continue;
+                if (this.rowOf[j] == this.rowOf[i] || this.columnOf[j] == this.columnOf[i] || this.boxOf[j] == this.boxOf[i]) {
+                    this.peers[i][p++] = j;
+                }
+            }
+        }
+    }
+
+    /** The shared layout for grids whose rows hold groupSize cells. */
+    public static Layout of(int groupSize) {
+        int boxLength = (int) Math.sqrt(groupSize);
+        if (boxLength * boxLength != groupSize || boxLength < 1 || boxLength >= LAYOUTS.length) {
+            throw new RuntimeException("BAD PUZZLE SIZE");
+        }
+
+        Layout layout = LAYOUTS[boxLength];
+        if (layout == null) {
+            synchronized (LAYOUTS) {
+                layout = LAYOUTS[boxLength];
+                if (layout == null) {
+                    layout = new Layout(boxLength);
+                    LAYOUTS[boxLength] = layout;
+                }
+            }
+        }
+        return layout;
+    }
+
+}
@@ -0,0 +1,25 @@
+package game;
+
+/** How Sudoku.mutate picks the two cells of a box whose values it swaps. */
+public enum Mutation {
+
+    /** Any two free cells of the box. */
+    RANDOM,
+
+    /**
+     * Only cells that can each take the other's value according to the candidates Mark left in the
+     * template, choosing among a few such pairs the one that removes the most duplicates.
+     * Grids without a template mutate as RANDOM.
+     */
+    CANDIDATES,
+
+    /**
+     * Aims at the duplicates: boxes with conflicting cells are mutated more often, and the swap
+     * moves a conflicting cell to the legal place that removes the most duplicates. How strongly
+     * conflicts are favoured is the bias passed to Sudoku.mutate.
+     */
+    CONFLICTS;
+
+    public static final double DEFAULT_CONFLICT_BIAS = 0.8;
+
+}
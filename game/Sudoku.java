@@ -1,73 +1,194 @@
 package game;
 
-import lombok.Data;
 import mark.Mark;
 
-import java.util.*;
+import java.util.Arrays;
 import java.util.concurrent.ThreadLocalRandom;
-import java.util.regex.Pattern;
 
-@Data
+/**
+ * A Sudoku grid backed by primitive arrays: one byte per cell value (Cell.EMPTY when unknown),
+ * bitsets flagging given and marked cells, and a Digits mask per row, column and box.
+ * Cell and Group are views over these arrays and are only needed by callers that want objects.
+ *
+ * Every write keeps per-group digit counts up to date and adjusts the score by the change it
+ * causes, so getScore() is a field read rather than a scan of all 3 * groupSize groups.
+ */
 public class Sudoku {
-    private Integer groupSize;
-    private Integer[] originalGrid;
-    private List<Cell> grid;
-    private Integer score = null;
+    private final Layout layout;
+    private final int groupSize;
+    private final int boxLength;
+    private final int[] originalGrid;
 
-    public Sudoku(Integer[] grid) {
-        this.groupSize = ((Double) Math.sqrt(grid.length)).intValue();
+    private final byte[] values;
+    private final long[] given;
+    private final long[] marked;
 
-        if(grid.length != Math.pow(groupSize, 2)) throw new RuntimeException("BAD PUZZLE SIZE");
+    private final long[] rowDigits;
+    private final long[] columnDigits;
+    private final long[] boxDigits;
+
+    // occurrences of each digit per group, indexed (group * groupSize) + (digit - 1)
+    private final byte[] rowCounts;
+    private final byte[] columnCounts;
+    private final byte[] boxCounts;
+
+    // the conflict map: digits held more than once in each group, kept as Digits masks
+    private final long[] rowDuplicates;
+    private final long[] columnDuplicates;
+    private final long[] boxDuplicates;
+
+    private int score;
+    private int empty;
+
+    // row, column and box views, created on first request
+    private Group[] groups;
+
+    // the compiled puzzle this grid was made from, if any
+    Template template;
+
+    public Sudoku(int[] grid) {
+        this.layout = Layout.of((int) Math.sqrt(grid.length));
+        this.groupSize = this.layout.groupSize;
+        this.boxLength = this.layout.boxLength;
+
+        if(grid.length != this.layout.cellCount) throw new RuntimeException("BAD PUZZLE SIZE");
 
         this.originalGrid = grid;
-        this.grid = toCells(grid);
+        this.values = new byte[grid.length];
+        this.given = new long[(grid.length + 63) >>> 6];
+        this.marked = new long[this.given.length];
+        this.rowDigits = new long[this.groupSize];
+        this.columnDigits = new long[this.groupSize];
+        this.boxDigits = new long[this.groupSize];
+        this.rowCounts = new byte[this.groupSize * this.groupSize];
+        this.columnCounts = new byte[this.groupSize * this.groupSize];
+        this.boxCounts = new byte[this.groupSize * this.groupSize];
+        this.rowDuplicates = new long[this.groupSize];
+        this.columnDuplicates = new long[this.groupSize];
+        this.boxDuplicates = new long[this.groupSize];
+        this.empty = grid.length;
+
+        for(int i = 0; i < grid.length; i++){
+            int v = grid[i];
+            if(v < Cell.MIN_VALUE || v > this.groupSize) continue;
+            this.values[i] = (byte) v;
+            this.given[i >>> 6] |= 1L << i;
+            this.addDigit(i, v);
+        }
+
         Mark.mark(this);
     }
 
+    private Sudoku(Sudoku other) {
+        this.layout = other.layout;
+        this.groupSize = other.groupSize;
+        this.boxLength = other.boxLength;
+        this.originalGrid = other.originalGrid;
+        this.values = new byte[other.values.length];
+        this.given = other.given.clone();
+        this.marked = other.marked.clone();
+        this.rowDigits = new long[this.groupSize];
+        this.columnDigits = new long[this.groupSize];
+        this.boxDigits = new long[this.groupSize];
+        this.rowCounts = new byte[this.groupSize * this.groupSize];
+        this.columnCounts = new byte[this.groupSize * this.groupSize];
+        this.boxCounts = new byte[this.groupSize * this.groupSize];
+        this.rowDuplicates = new long[this.groupSize];
+        this.columnDuplicates = new long[this.groupSize];
+        this.boxDuplicates = new long[this.groupSize];
+        this.empty = this.values.length;
+        this.template = other.template;
+    }
+
+    /** A full, independent copy of this grid, including the values of unlocked cells. */
+    public Sudoku copy(){
+        Sudoku copy = new Sudoku(this);
+
+        for(int i = 0; i < this.values.length; i++){
+            if(this.values[i] != Cell.EMPTY) {
+                copy.values[i] = this.values[i];
+                copy.addDigit(i, this.values[i]);
+            }
+        }
+        return copy;
+    }
+
     public Sudoku copyLocked(){
-        // Initialize with empty grid
-        Sudoku copy = new Sudoku(
-            Arrays.stream(new Integer[this.originalGrid.length]).map(x -> x = 0).toArray(Integer[]::new)
-        );
+        Sudoku copy = new Sudoku(this);
 
-        for(Cell c : this.grid){
-            copy.setCell(c.getColumnPosition(), c.getRowPosition(), c.isLocked().equals(Boolean.TRUE) ? c : null);
+        for(int i = 0; i < this.values.length; i++){
+            if(this.isLocked(i)) {
+                copy.values[i] = this.values[i];
+                copy.addDigit(i, this.values[i]);
+            }
         }
         return copy;
     }
 
+    /**
+     * Overwrites every cell with the values stored at src[offset ...], as written by store(), and
+     * rebuilds the counts and score. The locked cells of the source must match this grid's.
+     */
+    public void load(byte[] src, int offset){
+        System.arraycopy(src, offset, this.values, 0, this.values.length);
+
+        Arrays.fill(this.rowCounts, (byte) 0);
+        Arrays.fill(this.columnCounts, (byte) 0);
+        Arrays.fill(this.boxCounts, (byte) 0);
+        Arrays.fill(this.rowDigits, 0L);
+        Arrays.fill(this.columnDigits, 0L);
+        Arrays.fill(this.boxDigits, 0L);
+        Arrays.fill(this.rowDuplicates, 0L);
+        Arrays.fill(this.columnDuplicates, 0L);
+        Arrays.fill(this.boxDuplicates, 0L);
+        this.score = 0;
+        this.empty = this.values.length;
+
+        for(int i = 0; i < this.values.length; i++){
+            if(this.values[i] != Cell.EMPTY) this.addDigit(i, this.values[i]);
+        }
+    }
+
+    /** Writes every cell's value to dst[offset ...], one byte per cell. */
+    public void store(byte[] dst, int offset){
+        System.arraycopy(this.values, 0, dst, offset, this.values.length);
+    }
+
     public Sudoku fillRandom(){
-        for(Cell c : this.grid){
-            if(c.getValue() == null && !c.isLocked()) {
-                c.setValue(
-                    ThreadLocalRandom.current().nextInt(Cell.MIN_VALUE, (this.groupSize + 1))
-                );
+        for(int i = 0; i < this.values.length; i++){
+            if(this.values[i] == Cell.EMPTY && !this.isLocked(i)) {
+                this.set(i, ThreadLocalRandom.current().nextInt(Cell.MIN_VALUE, (this.groupSize + 1)));
             }
         }
         return this;
     }
 
     public Sudoku fillBoxes(){
-        HashMap<Integer, List<Integer>> comps = new HashMap<>();
-        for(int i = 0; i < groupSize; i++){
-            List<Integer> c = getBox(i).getCompliments();
-            Collections.shuffle(c);
-            comps.put(i, c);
-        }
+        int[] comp = new int[this.groupSize];
 
-        List<Integer> comp;
-        for(Cell c : this.grid){
-            if(c.getValue() == null && !c.isLocked()) {
-                comp = comps.get(c.getBoxPosition());
+        for(int b = 0; b < this.groupSize; b++){
+            int[] box = this.layout.boxes[b];
 
-                if(!comp.isEmpty()) {
-                    c.setValue(comp.get(0));
-                    comp.remove(0);
-                    comps.put(c.getBoxPosition(), comp);
-                }
-                else {
-                    c.setValue( ThreadLocalRandom.current().nextInt(Cell.MIN_VALUE, (this.groupSize + 1)) );
-                }
+            // shuffled list of the digits this box is missing
+            long missing = Digits.all(this.groupSize) & ~this.boxDigits[b];
+            int size = 0;
+            while(missing != 0){
+                comp[size++] = Digits.first(missing);
+                missing &= missing - 1;
+            }
+            for(int i = size - 1; i > 0; i--){
+                int j = ThreadLocalRandom.current().nextInt(i + 1);
+                int tmp = comp[i];
+                comp[i] = comp[j];
+                comp[j] = tmp;
+            }
+
+            int next = 0;
+            for(int gi : box){
+                if(this.values[gi] != Cell.EMPTY || this.isLocked(gi)) continue;
+
+                if(next < size) this.set(gi, comp[next++]);
+                else this.set(gi, ThreadLocalRandom.current().nextInt(Cell.MIN_VALUE, (this.groupSize + 1)));
             }
         }
 
@@ -79,99 +200,367 @@ public class Sudoku {
         String redColour = "\033[0;31m";
         String greenColour = "\033[0;32m";
 
-        Integer groupLength = ((Double) Math.sqrt(this.groupSize)).intValue();
+        // every value is right aligned to the width of the largest one
+        int width = decimalWidth(this.groupSize);
+
+        // the line between bands of boxes, with a | under each gap between boxes
+        StringBuilder separator = new StringBuilder();
+        for(int b = 0; b < this.boxLength; b++){
+            int dashes = (this.boxLength * (width + 1)) + (b < this.boxLength - 1 ? 1 : 0);
+            for(int d = 0; d < dashes; d++){
+                separator.append('-');
+            }
+            if(b < this.boxLength - 1) separator.append('|');
+        }
 
-        // this.rawGrid.length == (Cell.MAX_VALUE * Cell.MAX_VALUE)
         StringBuilder str = new StringBuilder();
-        for(int i = 0; i < this.originalGrid.length; i++){
-            Cell c = this.grid.get(i);
-            Integer v = c.getValue();
-
-            str.append(" ");
-            if(v == null) str.append(" ");
-            else if(c.getIsGiven().equals(Boolean.TRUE)) str.append(greenColour).append(v);
-            else if(c.getIsMarked().equals(Boolean.TRUE)) str.append(redColour).append(v);
+        for(int i = 0; i < this.values.length; i++){
+            int v = this.values[i];
+
+            str.append(' ');
+            for(int pad = decimalWidth(v); pad < width; pad++){
+                str.append(' ');
+            }
+            if(v == Cell.EMPTY) str.append(' ');
+            else if(this.isGiven(i)) str.append(greenColour).append(v);
+            else if(this.isMarked(i)) str.append(redColour).append(v);
             else str.append(v);
             str.append(resetColour);
 
             // if end of row
             if((i+1) % this.groupSize == 0) {
+                str.append('\n');
                 // if end of a group of rows (to insert a line between them)
-                if((i+1) % (this.groupSize * groupLength) == 0 && (i+1) % Math.pow(this.groupSize, 2) != 0) {
-                    String strCopy = str.toString();
-
-                    System.out.println(str);
-                    str = new StringBuilder();
-
-                    // Remove invisible characters from array
-                    strCopy = strCopy.replaceAll(Pattern.quote(resetColour), "");
-                    strCopy = strCopy.replaceAll(Pattern.quote(redColour), "");
-                    strCopy = strCopy.replaceAll(Pattern.quote(greenColour), "");
-
-                    // insert line, and a | character for column group spacing
-                    for (int j = 0; j < strCopy.length(); j++) {
-                        if (strCopy.charAt(j) == '|') str.append("|");
-                        else str.append("-");
-                    }
+                if((i+1) % (this.groupSize * this.boxLength) == 0 && (i+1) != this.values.length) {
+                    str.append(separator).append('\n');
                 }
-
-                System.out.println(str);
-                str = new StringBuilder();
             }
-            else if((i+1) % groupLength == 0) {
+            else if((i+1) % this.boxLength == 0) {
                 str.append(" |");
             }
         }
 
+        System.out.print(str);
         System.out.println(" ");
     }
 
-    public Boolean validate() {
-        return getScore() == 0;
+    private static int decimalWidth(int v){
+        int width = 1;
+        for(; v >= 10; v /= 10) width++;
+        return width;
+    }
+
+    /** True when every cell holds a digit and no row, column or box repeats one. */
+    public boolean validate() {
+        return this.empty == 0 && this.score == 0;
+    }
+
+    /** Number of repeated digits summed over every box, row and column. Empty cells are not counted. */
+    public int getScore() {
+        return this.score;
+    }
+
+    public int getEmptyCount() {
+        return this.empty;
+    }
+
+    public int getGroupSize() {
+        return this.groupSize;
+    }
+
+    public int getBoxLength() {
+        return this.boxLength;
     }
 
-    public Integer getScore() {
-        int s = 0;
+    public int size() {
+        return this.values.length;
+    }
+
+    public Layout getLayout() {
+        return this.layout;
+    }
 
-        // All Boxes
-        for(int i = 0; i < groupSize; i++){
-            s += getBox(i).numDuplicates();
+    public int[] getOriginalGrid() {
+        return this.originalGrid;
+    }
+
+    public int[] toIntArray(){
+        int[] arr = new int[this.values.length];
+        for(int i = 0; i < this.values.length; i++){
+            arr[i] = this.values[i];
         }
+        return arr;
+    }
+
+    /*
+     * Primitive accessors, indexed by grid position (y * groupSize) + x.
+     */
+
+    public int get(int index){
+        return this.values[index];
+    }
+
+    /** Sets a cell's value, ignoring the write if the cell is given or marked. */
+    public void set(int index, int value){
+        if(value < Cell.EMPTY || value > this.groupSize) throw new RuntimeException("BAD DIGIT " + value);
+        if(this.isLocked(index)) return;
+
+        int old = this.values[index];
+        if(old == value) return;
+
+        this.values[index] = (byte) value;
+        if(old != Cell.EMPTY) this.removeDigit(index, old);
+        if(value != Cell.EMPTY) this.addDigit(index, value);
+    }
+
+    /** Sets a cell's value and locks it as deduced. Given cells are left untouched; a cell cannot be marked empty. */
+    public void mark(int index, int value){
+        if(value < Cell.MIN_VALUE || value > this.groupSize) throw new RuntimeException("BAD DIGIT " + value);
+        if(this.isGiven(index)) return;
+
+        int old = this.values[index];
+        this.values[index] = (byte) value;
+        if(old != Cell.EMPTY) this.removeDigit(index, old);
+        this.addDigit(index, value);
+        this.marked[index >>> 6] |= 1L << index;
+    }
+
+    public boolean isGiven(int index){
+        return (this.given[index >>> 6] & (1L << index)) != 0;
+    }
+
+    public boolean isMarked(int index){
+        return (this.marked[index >>> 6] & (1L << index)) != 0;
+    }
+
+    public boolean isLocked(int index){
+        return ((this.given[index >>> 6] | this.marked[index >>> 6]) & (1L << index)) != 0;
+    }
+
+    public int rowOf(int index){
+        return this.layout.rowOf[index];
+    }
+
+    public int columnOf(int index){
+        return this.layout.columnOf[index];
+    }
+
+    public int boxOf(int index){
+        return this.layout.boxOf[index];
+    }
+
+    public long getRowDigits(int row){
+        return this.rowDigits[row];
+    }
+
+    public long getColumnDigits(int column){
+        return this.columnDigits[column];
+    }
+
+    public long getBoxDigits(int box){
+        return this.boxDigits[box];
+    }
+
+    /** Digits not yet used by any row, column or box the cell belongs to. */
+    public long getCandidates(int index){
+        return Digits.all(this.groupSize)
+            & ~(this.rowDigits[this.rowOf(index)] | this.columnDigits[this.columnOf(index)] | this.boxDigits[this.boxOf(index)]);
+    }
+
+    /** Digits held by more than one cell of the row; 0 if the row has no conflict. */
+    public long getRowDuplicates(int row){
+        return this.rowDuplicates[row];
+    }
+
+    /** Digits held by more than one cell of the column; 0 if the column has no conflict. */
+    public long getColumnDuplicates(int column){
+        return this.columnDuplicates[column];
+    }
 
-        // All Rows
-        for(int i = 0; i < groupSize; i++){
-            s += getRow(i).numDuplicates();
+    /** Digits held by more than one cell of the box; 0 if the box has no conflict. */
+    public long getBoxDuplicates(int box){
+        return this.boxDuplicates[box];
+    }
+
+    /** True if the cell's value also appears elsewhere in its row, column or box. */
+    public boolean isConflicting(int index){
+        int v = this.values[index];
+        if(v == Cell.EMPTY) return false;
+        long duplicates = this.rowDuplicates[this.rowOf(index)] | this.columnDuplicates[this.columnOf(index)] | this.boxDuplicates[this.boxOf(index)];
+        return Digits.contains(duplicates, v);
+    }
+
+    /** Number of cells holding the digit in the given row. */
+    public int getRowCount(int row, int digit){
+        return this.rowCounts[(row * this.groupSize) + digit - 1];
+    }
+
+    /** Number of cells holding the digit in the given column. */
+    public int getColumnCount(int column, int digit){
+        return this.columnCounts[(column * this.groupSize) + digit - 1];
+    }
+
+    /** Number of cells holding the digit in the given box. */
+    public int getBoxCount(int box, int digit){
+        return this.boxCounts[(box * this.groupSize) + digit - 1];
+    }
+
+    /**
+     * Change in score that swapping the values of two cells would cause, without making the swap.
+     * Only the counts of the groups the two cells belong to are consulted, so this is O(1).
+     */
+    public int swapDelta(int index1, int index2){
+        int a = this.values[index1];
+        int b = this.values[index2];
+        if(a == b) return 0;
+
+        int delta = 0;
+
+        int r1 = this.rowOf(index1), r2 = this.rowOf(index2);
+        if(r1 != r2) delta += moveDelta(this.rowCounts, r1, r2, a, b);
+
+        int c1 = this.columnOf(index1), c2 = this.columnOf(index2);
+        if(c1 != c2) delta += moveDelta(this.columnCounts, c1, c2, a, b);
+
+        int b1 = this.boxOf(index1), b2 = this.boxOf(index2);
+        if(b1 != b2) delta += moveDelta(this.boxCounts, b1, b2, a, b);
+
+        return delta;
+    }
+
+    /** The compiled puzzle this grid was made from, or null if it was built from an int[] grid. */
+    public Template getTemplate() {
+        return this.template;
+    }
+
+    /** Swaps the values of two random non locked cells among the given cells, if there are two. */
+    public void swapRandom(int[] cells){
+        // Count the non locked cells in this group
+        int nonLocked = 0;
+        for(int gi : cells){
+            if(!this.isLocked(gi)) nonLocked++;
         }
+        if(nonLocked < 2) return; // if there's less than 2, we can't swap anything
+
+        // Pick two distinct non locked cells at random
+        int pick1 = ThreadLocalRandom.current().nextInt(nonLocked);
+        int pick2 = ThreadLocalRandom.current().nextInt(nonLocked - 1);
+        if(pick2 >= pick1) pick2++;
+
+        int gi1 = -1;
+        int gi2 = -1;
+        int n = 0;
+        for(int gi : cells){
+            if(this.isLocked(gi)) continue;
+            if(n == pick1) gi1 = gi;
+            if(n == pick2) gi2 = gi;
+            n++;
+        }
+
+        this.swap(gi1, gi2);
+    }
 
-        // All Columns
-        for(int i = 0; i < groupSize; i++){
-            s += getColumn(i).numDuplicates();
+    // with a template the free cells of the box are known, so no locked cells need skipping
+    private void swapInBox(int box){
+        if(this.template == null) {
+            this.swapRandom(this.layout.boxes[box]);
+            return;
         }
 
-        this.score = s;
-        return s;
+        int[] free = this.template.getFreeCells(box);
+        if(free.length < 2) return;
+
+        int pick1 = ThreadLocalRandom.current().nextInt(free.length);
+        int pick2 = ThreadLocalRandom.current().nextInt(free.length - 1);
+        if(pick2 >= pick1) pick2++;
+
+        this.swap(free[pick1], free[pick2]);
     }
 
-    public List<Cell> getCellList() {
-        return this.grid;
+    // samples as many pairs as the box has free cells and makes the legal swap with the best delta, if any was found
+    private void swapLegalInBox(int box){
+        int[] free = this.template.getFreeCells(box);
+        if(free.length < 2) return;
+
+        int best1 = -1;
+        int best2 = -1;
+        int bestDelta = Integer.MAX_VALUE;
+
+        for(int attempt = 0; attempt < free.length; attempt++){
+            int pick1 = ThreadLocalRandom.current().nextInt(free.length);
+            int pick2 = ThreadLocalRandom.current().nextInt(free.length - 1);
+            if(pick2 >= pick1) pick2++;
+
+            int gi1 = free[pick1];
+            int gi2 = free[pick2];
+            if(!Digits.contains(this.template.getCandidates(gi1), this.values[gi2])) continue;
+            if(!Digits.contains(this.template.getCandidates(gi2), this.values[gi1])) continue;
+
+            int delta = this.swapDelta(gi1, gi2);
+            if(delta < bestDelta) {
+                best1 = gi1;
+                best2 = gi2;
+                bestDelta = delta;
+            }
+        }
+
+        if(best1 >= 0) this.swap(best1, best2);
     }
 
-    private List<Cell> toCells(Integer[] grid){
-        List<Cell> cells = new ArrayList<>();
+    /** Swaps the values of two cells. Locked cells are left untouched. */
+    public void swap(int index1, int index2){
+        if(this.isLocked(index1) || this.isLocked(index2)) return;
 
-        int index = 0;
-        for(Integer v : grid){
-            cells.add(new Cell(groupSize, v, index++));
-        }
-        return cells;
+        int tmp = this.values[index1];
+        this.set(index1, this.values[index2]);
+        this.set(index2, tmp);
     }
 
-    private Integer[] toIntArray(){
-        Integer[] arr = new Integer[this.grid.size()];
-        for(Cell c : this.grid){
-            arr[c.getIndex()] = c.getValue();
+    // score change of value a leaving group g1 for g2 while value b goes the other way
+    private int moveDelta(byte[] counts, int g1, int g2, int a, int b){
+        int delta = 0;
+        if(a != Cell.EMPTY) {
+            delta -= counts[(g1 * this.groupSize) + a - 1] > 1 ? 1 : 0;
+            delta += counts[(g2 * this.groupSize) + a - 1] > 0 ? 1 : 0;
         }
-        return arr;
+        if(b != Cell.EMPTY) {
+            delta -= counts[(g2 * this.groupSize) + b - 1] > 1 ? 1 : 0;
+            delta += counts[(g1 * this.groupSize) + b - 1] > 0 ? 1 : 0;
+        }
+        return delta;
+    }
+
+    private void addDigit(int index, int value){
+        this.empty--;
+        long bit = Digits.bit(value);
+        if(increment(this.rowCounts, this.rowDuplicates, this.rowOf(index), value)) this.rowDigits[this.rowOf(index)] |= bit;
+        if(increment(this.columnCounts, this.columnDuplicates, this.columnOf(index), value)) this.columnDigits[this.columnOf(index)] |= bit;
+        if(increment(this.boxCounts, this.boxDuplicates, this.boxOf(index), value)) this.boxDigits[this.boxOf(index)] |= bit;
+    }
+
+    private void removeDigit(int index, int value){
+        this.empty++;
+        // a digit stays in the group's mask while another cell of the group still holds it
+        long bit = Digits.bit(value);
+        if(decrement(this.rowCounts, this.rowDuplicates, this.rowOf(index), value)) this.rowDigits[this.rowOf(index)] &= ~bit;
+        if(decrement(this.columnCounts, this.columnDuplicates, this.columnOf(index), value)) this.columnDigits[this.columnOf(index)] &= ~bit;
+        if(decrement(this.boxCounts, this.boxDuplicates, this.boxOf(index), value)) this.boxDigits[this.boxOf(index)] &= ~bit;
+    }
+
+    // returns true when the digit is new to the group
+    private boolean increment(byte[] counts, long[] duplicates, int group, int value){
+        int c = ++counts[(group * this.groupSize) + value - 1];
+        if(c > 1) this.score++;
+        if(c == 2) duplicates[group] |= Digits.bit(value);
+        return c == 1;
+    }
+
+    // returns true when the digit has left the group entirely
+    private boolean decrement(byte[] counts, long[] duplicates, int group, int value){
+        int c = counts[(group * this.groupSize) + value - 1]--;
+        if(c > 1) this.score--;
+        if(c == 2) duplicates[group] &= ~Digits.bit(value);
+        return c == 1;
     }
 
     /**
@@ -183,13 +572,11 @@ public class Sudoku {
      * 0,2 | 1,2 | 2,2
      *
      * */
-    public Group getBox(Integer x, Integer y) {
-        Integer boxLength = ((Double) Math.sqrt(this.groupSize)).intValue();
+    public Group getBox(int x, int y) {
+        x = x / this.boxLength;
+        y = y / this.boxLength;
 
-        x = x / boxLength;
-        y = y / boxLength;
-
-        return getBox((y * boxLength) + x);
+        return getBox((y * this.boxLength) + x);
     }
 
     /**
@@ -201,68 +588,53 @@ public class Sudoku {
      * 6 | 7 | 8
      *
      * */
-    public Group getBox(Integer index) {
-        Group group = new Group(this.groupSize);
-
-        Integer boxLength = ((Double) Math.sqrt(this.groupSize)).intValue();
-
-        Integer startColumn = (index % boxLength) * boxLength;
-        Integer startRow = (index / boxLength) * boxLength;
-
-        int i = 0;
-        for (int x = startColumn; x < (startColumn + boxLength); x++) {
-            for (int y = startRow; y < (startRow + boxLength); y++) {
-                group.setCell(i++, getCell(x, y));
-            }
-        }
-
-        return group;
+    public Group getBox(int index) {
+        return this.getGroup(Group.Kind.BOX, index);
     }
 
-    public void setBox(Integer index, Group group) {
-        Integer boxLength = ((Double) Math.sqrt(this.groupSize)).intValue();
-
-        Integer startColumn = (index % boxLength) * boxLength;
-        Integer startRow = (index / boxLength) * boxLength;
+    public void setBox(int index, Group group) {
+        this.setGroup(this.layout.boxes[index], group);
+    }
 
-        int c = 0;
-        for (int x = startColumn; x < (startColumn + boxLength); x++) {
-            for (int y = startRow; y < (startRow + boxLength); y++) {
-                setCell(x, y, group.getCell(c++));
-            }
+    /** Copies a box's values from another Sudoku of the same size without going through views. */
+    public void copyBox(int index, Sudoku from) {
+        for (int gi : this.layout.boxes[index]) {
+            this.set(gi, from.values[gi]);
         }
     }
 
-    public Group getRow(Integer index) {
-        Group group = new Group(this.groupSize);
-
-        for(int i = 0; i < this.groupSize; i++){
-            group.setCell(i, getCell(i, index));
-        }
+    public Group getRow(int index) {
+        return this.getGroup(Group.Kind.ROW, index);
+    }
 
-        return group;
+    public void setRow(int index, Group group) {
+        this.setGroup(this.layout.rows[index], group);
     }
 
-    public void setRow(Integer index, Group group) {
-        for(int i = 0; i < this.groupSize; i++){
-            setCell(i, index, group.getCell(i));
-        }
+    public Group getColumn(int index) {
+        return this.getGroup(Group.Kind.COLUMN, index);
     }
 
-    public Group getColumn(Integer index) {
-        Group group = new Group(this.groupSize);
+    public void setColumn(int index, Group group) {
+        this.setGroup(this.layout.columns[index], group);
+    }
 
+    private void setGroup(int[] target, Group source) {
         for (int i = 0; i < this.groupSize; i++) {
-            group.setCell(i, getCell(index, i));
+            this.set(target[i], source.getValue(i));
         }
-
-        return group;
     }
 
-    public void setColumn(Integer index, Group group) {
-        for (int i = 0; i < this.groupSize; i++) {
-            setCell(index, i, group.getCell(i));
+    private Group getGroup(Group.Kind kind, int index) {
+        if(this.groups == null) this.groups = new Group[3 * this.groupSize];
+
+        int u = (kind.ordinal() * this.groupSize) + index;
+        Group group = this.groups[u];
+        if(group == null) {
+            group = new Group(this, kind, index, this.layout.units[u]);
+            this.groups[u] = group;
         }
+        return group;
     }
 
     /**
@@ -289,32 +661,123 @@ public class Sudoku {
      * 0,8 | 1,8 | 2,8 || 3,8 | 4,8 | 5,8 || 6,8 | 7,8 | 8,8
      *
      * */
-    public Cell getCell(Integer x, Integer y){
+    public Cell getCell(int x, int y){
         return this.getCell((y * this.groupSize) + x);
     }
 
-    public Cell getCell(Integer index){
-        return this.grid.get(index);
+    public Cell getCell(int index){
+        return new Cell(this, index);
     }
 
-    private Cell setCell(Integer x, Integer y, Cell cell){
-        return this.setCell((y * this.groupSize) + x, cell);
+    public Sudoku mutate(double mutationRate) {
+        return this.mutate(mutationRate, Mutation.RANDOM);
     }
-    public Cell setCell(Integer index, Cell cell){
-        Cell curr = getCell(index);
-        if(curr != null && curr.isLocked().equals(Boolean.TRUE)) return curr;
 
-        if(cell != null) cell.setPosition(index);
-        return this.grid.set(index, cell);
+    public Sudoku mutate(double mutationRate, Mutation mode) {
+        return this.mutate(mutationRate, mode, Mutation.DEFAULT_CONFLICT_BIAS);
     }
 
-    public Sudoku mutate(Double mutationRate) {
+    /**
+     * Swaps two values in each box with probability mutationRate, choosing the cells as the mode says.
+     * With CONFLICTS, a box none of whose free cells conflict is only mutated with probability
+     * mutationRate * (1 - conflictBias), so a bias of 0 mutates boxes uniformly and 1 only where duplicates are.
+     */
+    public Sudoku mutate(double mutationRate, Mutation mode, double conflictBias) {
+        boolean constrained = mode != Mutation.RANDOM && this.template != null;
+
         for(int i = 0; i < this.groupSize; i++) {
-            if(ThreadLocalRandom.current().nextInt(0, 101) <= mutationRate * 100) {
-                setBox(i, getBox(i).swap2());
+            double rate = mutationRate;
+            if(mode == Mutation.CONFLICTS && !this.hasConflictInBox(i)) rate *= 1 - conflictBias;
+
+            if(ThreadLocalRandom.current().nextInt(0, 101) <= rate * 100) {
+                if(mode == Mutation.CONFLICTS) this.swapConflictInBox(i, conflictBias);
+                else if(constrained) this.swapLegalInBox(i);
+                else this.swapInBox(i);
             }
         }
         return this;
     }
 
+    // free cells of a box, from the template when there is one
+    private int[] freeCells(int box){
+        if(this.template != null) return this.template.getFreeCells(box);
+
+        int[] cells = this.layout.boxes[box];
+        int nbFree = 0;
+        for(int gi : cells){
+            if(!this.isLocked(gi)) nbFree++;
+        }
+        int[] free = new int[nbFree];
+        nbFree = 0;
+        for(int gi : cells){
+            if(!this.isLocked(gi)) free[nbFree++] = gi;
+        }
+        return free;
+    }
+
+    private boolean hasConflictInBox(int box){
+        for(int gi : this.layout.boxes[box]){
+            if(!this.isLocked(gi) && this.isConflicting(gi)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * With probability conflictBias the first cell is one of the box's conflicting cells, otherwise any free cell.
+     * It is swapped with whichever other free cell gives the lowest swapDelta, among those allowed by the
+     * template's candidates when there is a template.
+     */
+    private void swapConflictInBox(int box, double conflictBias){
+        int[] free = this.freeCells(box);
+        if(free.length < 2) return;
+
+        int nbConflicting = 0;
+        int first = -1;
+        if(ThreadLocalRandom.current().nextDouble() < conflictBias) {
+            // reservoir sampling over the conflicting cells, so no list needs building
+            for(int gi : free){
+                if(this.isConflicting(gi) && ThreadLocalRandom.current().nextInt(++nbConflicting) == 0) first = gi;
+            }
+        }
+        if(first < 0) first = free[ThreadLocalRandom.current().nextInt(free.length)];
+
+        int second = -1;
+        int bestDelta = Integer.MAX_VALUE;
+        int nbTies = 0;
+        for(int gi : free){
+            if(gi == first) continue;
+            if(this.template != null) {
+                if(!Digits.contains(this.template.getCandidates(first), this.values[gi])) continue;
+                if(!Digits.contains(this.template.getCandidates(gi), this.values[first])) continue;
+            }
+
+            int delta = this.swapDelta(first, gi);
+            if(delta < bestDelta) {
+                second = gi;
+                bestDelta = delta;
+                nbTies = 1;
+            }
+            else if(delta == bestDelta && ThreadLocalRandom.current().nextInt(++nbTies) == 0) {
+                second = gi;
+            }
+        }
+
+        if(second >= 0) this.swap(first, second);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if(this == o) return true;
+        if(!(o instanceof Sudoku)) return false;
+        Sudoku other = (Sudoku) o;
+        return Arrays.equals(this.values, other.values)
+            && Arrays.equals(this.given, other.given)
+            && Arrays.equals(this.marked, other.marked);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(this.values);
+    }
+
 }
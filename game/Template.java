@@ -0,0 +1,89 @@
+package game;
+
+import mark.Candidates;
+import mark.Mark;
+
+/**
+ * A puzzle compiled once for a whole population: its given and marked cells, the candidates left
+ * in every other cell once Mark has finished, and the free (unlocked) cells of each box.
+ * A template is never modified after compile(), so any number of threads may share it.
+ *
+ * Individuals are stamped out with newIndividual() and fill(), which copy arrays and never run
+ * constraint propagation again.
+ */
+public final class Template {
+
+    private final Sudoku puzzle;
+    private final byte[] values;
+    private final long[] candidates;
+    private final int[][] freeCells;
+    private final boolean contradicted;
+
+    private Template(Sudoku puzzle, Candidates candidates) {
+        this.puzzle = puzzle;
+        this.puzzle.template = this;
+
+        Layout layout = puzzle.getLayout();
+
+        this.values = new byte[layout.cellCount];
+        puzzle.store(this.values, 0);
+
+        this.candidates = new long[layout.cellCount];
+        for(int i = 0; i < layout.cellCount; i++){
+            this.candidates[i] = candidates.get(i);
+        }
+
+        this.freeCells = new int[layout.groupSize][];
+        for(int b = 0; b < layout.groupSize; b++){
+            int nbFree = 0;
+            for(int cell : layout.boxes[b]){
+                if(!puzzle.isLocked(cell)) nbFree++;
+            }
+            this.freeCells[b] = new int[nbFree];
+            nbFree = 0;
+            for(int cell : layout.boxes[b]){
+                if(!puzzle.isLocked(cell)) this.freeCells[b][nbFree++] = cell;
+            }
+        }
+
+        this.contradicted = candidates.isContradicted();
+    }
+
+    /** Marks the puzzle's locked cells as far as Mark can go and records what is left. */
+    public static Template compile(Sudoku puzzle) {
+        Sudoku locked = puzzle.copyLocked();
+        return new Template(locked, Mark.deduce(locked));
+    }
+
+    /** The locked cells, every other cell empty. Do not modify. */
+    public Sudoku getPuzzle() {
+        return this.puzzle;
+    }
+
+    /** Digits a free cell may take; a locked cell's mask is the bit of its value. */
+    public long getCandidates(int cell) {
+        return this.candidates[cell];
+    }
+
+    /** The cells of a box that are neither given nor marked. */
+    public int[] getFreeCells(int box) {
+        return this.freeCells[box];
+    }
+
+    /** True if marking found the givens cannot be completed. */
+    public boolean isContradicted() {
+        return this.contradicted;
+    }
+
+    /** A new grid with the locked cells filled in and every other cell empty. */
+    public Sudoku newIndividual() {
+        return this.puzzle.copyLocked();
+    }
+
+    /** Resets a grid of this template to the locked cells and fills each box with its missing digits in random order. */
+    public Sudoku fill(Sudoku individual) {
+        individual.load(this.values, 0);
+        return individual.fillBoxes();
+    }
+
+}
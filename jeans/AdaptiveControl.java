@@ -0,0 +1,177 @@
+package jeans;
+
+/**
+ * Sets Genie's mutation rate, selection pressure and brood size from what the last generation
+ * did, in place of fixed settings, and decides when a population has converged for good.
+ * One instance follows one population; update() is called once per generation, after sorting.
+ *
+ * Diversity is read as a share of the population's starting diversity, in three bands: healthy above
+ * a floor, low below it, and collapsed below a lower threshold still.
+ *
+ * - The mutation rate goes back to its start when the best score improves, and rises while it stalls.
+ *   It only eases off when most mutations have been making children worse and diversity is healthy;
+ *   while diversity is low it rises faster instead.
+ * - Selection is truncation, whose pressure eases while diversity is low and returns to its starting
+ *   level once it is healthy again.
+ * - Each mating has more children while crossover often beats both parents, fewer otherwise.
+ * - A restart is due once diversity has stayed collapsed for some generations without improvement,
+ *   or, as a backstop, after a long stall at any diversity.
+ *
+ * Nothing is adapted until some operator outcome has been counted, so the first generation, bred
+ * before any control was in place, does not read as a generation of failures.
+ */
+public final class AdaptiveControl {
+
+    private static final double MIN_MUTATION_RATE = 0.2;
+    private static final double MAX_MUTATION_RATE = 1.0;
+    private static final double START_MUTATION_RATE = 0.4;
+
+    // truncation selection: parents come from the best selectionRate of the population, or from anywhere
+    // as often as randomSelectionRate allows; a lower selectionRate selects harder
+    private static final double MIN_SELECTION_RATE = 0.1;
+    private static final double MAX_SELECTION_RATE = 0.5;
+    private static final double MIN_RANDOM_SELECTION_RATE = 0.1;
+    private static final double MAX_RANDOM_SELECTION_RATE = 0.5;
+
+    private static final int MIN_CHILDREN = 4;
+    private static final int MAX_CHILDREN = 20;
+
+    // diversity floor, and collapse threshold below it, as shares of the diversity of the first generation
+    private static final double LOW_DIVERSITY = 0.6;
+    private static final double COLLAPSED_DIVERSITY = 0.4;
+
+    // generations of collapse, and of stall at any diversity, before a restart
+    private static final int PATIENCE = 15;
+    private static final int STALL_LIMIT = 60;
+
+    // mutation success rate below which a stall at healthy diversity eases the mutation rate
+    private static final double LOW_MUTATION_SUCCESS = 0.1;
+
+    // crossover success rates above and below which broods grow and shrink
+    private static final double HIGH_CROSSOVER_SUCCESS = 0.2;
+    private static final double LOW_CROSSOVER_SUCCESS = 0.05;
+
+    // individuals sampled when measuring diversity
+    private static final int DIVERSITY_SAMPLE = 64;
+
+    private final double startSelectionRate;
+    private final double startRandomSelectionRate;
+    private final int startChildren;
+
+    private double mutationRate;
+    private double selectionRate;
+    private double randomSelectionRate;
+    private int nbChildren;
+    private Selection selection;
+
+    private double startDiversity;
+    private double diversity;
+    private double crossoverSuccess;
+    private double mutationSuccess;
+    private int nbGenerationsCollapsed;
+    private int nbGenerationsWithoutImprovement;
+
+    /** Starts from the given settings, the ones a Genie would otherwise keep for the whole run. */
+    public AdaptiveControl(double selectionRate, double randomSelectionRate, int nbChildren) {
+        this.startSelectionRate = selectionRate;
+        this.startRandomSelectionRate = randomSelectionRate;
+        this.startChildren = nbChildren;
+        this.reset();
+    }
+
+    /** Back to the starting settings, for a population that has just been drawn afresh. */
+    public void reset() {
+        this.mutationRate = START_MUTATION_RATE;
+        this.selectionRate = clamp(this.startSelectionRate, MIN_SELECTION_RATE, MAX_SELECTION_RATE);
+        this.randomSelectionRate = clamp(this.startRandomSelectionRate, MIN_RANDOM_SELECTION_RATE, MAX_RANDOM_SELECTION_RATE);
+        this.nbChildren = Math.max(MIN_CHILDREN, Math.min(MAX_CHILDREN, this.startChildren));
+        this.selection = new Truncation(this.selectionRate, this.randomSelectionRate);
+        this.startDiversity = -1;
+        this.nbGenerationsCollapsed = 0;
+        this.nbGenerationsWithoutImprovement = 0;
+    }
+
+    /** Reads the sorted arena, and the operator outcomes counted since the last call, and adjusts every setting. */
+    public void update(Arena arena, boolean improved) {
+        this.diversity = arena.diversity(DIVERSITY_SAMPLE);
+        if(this.startDiversity <= 0) this.startDiversity = this.diversity; // the first non-zero measurement
+
+        double[] success = arena.drainSuccessRates();
+        this.crossoverSuccess = success[Operator.CROSSOVER.ordinal()];
+        this.mutationSuccess = success[Operator.MUTATION.ordinal()];
+
+        // with no baseline yet, as when every individual started out the same, nothing counts as low or collapsed
+        double relative = this.startDiversity > 0 ? this.diversity / this.startDiversity : 1;
+
+        this.nbGenerationsWithoutImprovement = improved ? 0 : this.nbGenerationsWithoutImprovement + 1;
+        this.nbGenerationsCollapsed = relative < COLLAPSED_DIVERSITY && !improved ? this.nbGenerationsCollapsed + 1 : 0;
+
+        // no outcomes yet: the rates say nothing about the current settings
+        if(Double.isNaN(this.crossoverSuccess) && Double.isNaN(this.mutationSuccess)) return;
+
+        // back to the start on progress; on a stall, harder unless mutations mostly do harm while diversity is still healthy
+        boolean harmful = this.mutationSuccess < LOW_MUTATION_SUCCESS && relative >= LOW_DIVERSITY;
+        double rate = improved ? START_MUTATION_RATE : this.mutationRate * (harmful ? 0.9 : 1.1);
+        if(relative < LOW_DIVERSITY) rate *= 1.2;
+        this.mutationRate = clamp(rate, MIN_MUTATION_RATE, MAX_MUTATION_RATE);
+
+        // below the floor selection eases off; above it, it works its way back to the starting pressure
+        double selectionRate = relative < LOW_DIVERSITY
+            ? Math.min(MAX_SELECTION_RATE, this.selectionRate + 0.02)
+            : Math.max(this.startSelectionRate, this.selectionRate - 0.01);
+        double randomSelectionRate = relative < LOW_DIVERSITY
+            ? Math.min(MAX_RANDOM_SELECTION_RATE, this.randomSelectionRate + 0.02)
+            : Math.max(this.startRandomSelectionRate, this.randomSelectionRate - 0.01);
+        if(selectionRate != this.selectionRate || randomSelectionRate != this.randomSelectionRate) {
+            this.selectionRate = selectionRate;
+            this.randomSelectionRate = randomSelectionRate;
+            this.selection = new Truncation(selectionRate, randomSelectionRate);
+        }
+
+        if(this.crossoverSuccess > HIGH_CROSSOVER_SUCCESS) this.nbChildren = Math.min(MAX_CHILDREN, this.nbChildren + 1);
+        else if(this.crossoverSuccess < LOW_CROSSOVER_SUCCESS) this.nbChildren = Math.max(MIN_CHILDREN, this.nbChildren - 1);
+    }
+
+    public boolean shouldRestart() {
+        return this.nbGenerationsCollapsed >= PATIENCE || this.nbGenerationsWithoutImprovement >= STALL_LIMIT;
+    }
+
+    public double getMutationRate() {
+        return this.mutationRate;
+    }
+
+    public double getSelectionRate() {
+        return this.selectionRate;
+    }
+
+    public double getRandomSelectionRate() {
+        return this.randomSelectionRate;
+    }
+
+    public Selection getSelection() {
+        return this.selection;
+    }
+
+    public int getNbChildren() {
+        return this.nbChildren;
+    }
+
+    public double getDiversity() {
+        return this.diversity;
+    }
+
+    /** Share of crossovers that beat both parents in the last generation, NaN if none were counted. */
+    public double getCrossoverSuccess() {
+        return this.crossoverSuccess;
+    }
+
+    /** Share of mutations that improved the child in the last generation, NaN if none were counted. */
+    public double getMutationSuccess() {
+        return this.mutationSuccess;
+    }
+
+    private static double clamp(double value, double min, double max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+}
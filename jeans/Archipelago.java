@@ -0,0 +1,164 @@
+package jeans;
+
+import game.Sudoku;
+import solver.Solver;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Island-model GA: several independent populations, each evolved by its own thread with the
+ * operators of one Genie. Every migrationInterval generations an island sends copies of its best
+ * individuals to the next island in a ring, through a lock-free queue, and replaces its worst
+ * individuals with whatever has arrived in its own queue. Islands share nothing else.
+ *
+ * A stalled island starts again from random, apart from the individuals the Genie's warm restart
+ * keeps, but the other islands keep their progress and migration brings good material back to it. The first island to find a solution stops the rest,
+ * as does an island that fails; every island also stops at a generation boundary once interrupted.
+ */
+public class Archipelago implements Solver {
+
+    private final Genie genie;
+    private final int nbIslands;
+    private final int migrationInterval;
+    private final int nbMigrants;
+
+    /**
+     * The Genie supplies the GA parameters and operators; give it no pool so that each island
+     * runs entirely on its own thread.
+     */
+    public Archipelago(Genie genie, int nbIslands, int migrationInterval, int nbMigrants) {
+        this.genie = genie;
+        this.nbIslands = nbIslands;
+        this.migrationInterval = migrationInterval;
+        this.nbMigrants = nbMigrants;
+    }
+
+    public Archipelago(){
+        this(new Genie(1000, 0.3, 0.3, 10, 10000, 30, null), Runtime.getRuntime().availableProcessors(), 10, 5);
+    }
+
+    /** The Genie whose parameters, operators and listener every island uses. */
+    public Genie getGenie() {
+        return genie;
+    }
+
+    @Override
+    public Sudoku solve(Sudoku puzzle) {
+        if(puzzle.validate()) return puzzle.copy();
+
+        AtomicReference<Sudoku> solution = new AtomicReference<>();
+        AtomicBoolean failed = new AtomicBoolean();
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        ConcurrentLinkedQueue<Sudoku>[] inboxes = new ConcurrentLinkedQueue[nbIslands];
+        for(int i = 0; i < nbIslands; i++){
+            inboxes[i] = new ConcurrentLinkedQueue<>();
+        }
+
+        ExecutorService threads = Executors.newFixedThreadPool(nbIslands);
+        try {
+            Future<?>[] islands = new Future<?>[nbIslands];
+            for(int i = 0; i < nbIslands; i++){
+                int island = i;
+                ConcurrentLinkedQueue<Sudoku> inbox = inboxes[i];
+                ConcurrentLinkedQueue<Sudoku> outbox = inboxes[(i + 1) % nbIslands];
+                islands[i] = threads.submit(() -> {
+                    try {
+                        evolve(puzzle, island, inbox, outbox, solution, failed);
+                    }
+                    catch(RuntimeException | Error e){
+                        failed.set(true);
+                        throw e;
+                    }
+                });
+            }
+            for(Future<?> island : islands){
+                island.get();
+            }
+        }
+        catch(Exception e){
+            throw new RuntimeException(e);
+        }
+        finally {
+            threads.shutdownNow();
+        }
+
+        return solution.get();
+    }
+
+    private void evolve(Sudoku origin, int island, ConcurrentLinkedQueue<Sudoku> inbox, ConcurrentLinkedQueue<Sudoku> outbox, AtomicReference<Sudoku> solution, AtomicBoolean failed) {
+        Arena population = genie.newArena(origin);
+        Recorder recorder = new Recorder(genie.getListener(), island);
+        genie.createGeneration(population);
+        recorder.evaluated(population.size());
+
+        int nbGenerationsWithoutImprovement = 0;
+        int bestScore = Integer.MAX_VALUE;
+        AdaptiveControl control = genie.isAdaptive() ? genie.newControl() : null;
+
+        for(int generation = 1; generation <= genie.getMaxNbGenerations() && solution.get() == null && !failed.get() && !Thread.currentThread().isInterrupted(); generation++){
+            genie.sortByScore(population);
+            recorder.generation(population, generation);
+
+            if(population.getScore(population.best()) == 0) {
+                solution.compareAndSet(null, population.toSudoku(population.best()));
+                recorder.finish(true);
+                return;
+            }
+
+            boolean improved = bestScore > population.getScore(population.best());
+            if(improved){
+                bestScore = population.getScore(population.best());
+                nbGenerationsWithoutImprovement = 0;
+            }
+            else {
+                nbGenerationsWithoutImprovement++;
+            }
+            if(control != null) control.update(population, improved);
+
+            if(control != null ? control.shouldRestart() : nbGenerationsWithoutImprovement >= genie.getMaxNbGenerationsWithoutImprovement()) {
+                recorder.restart(generation);
+                int nbKept = Math.min(genie.getNbKeptOnRestart(), population.size());
+                population.keepBest(nbKept);
+                genie.createGeneration(population, nbKept);
+                recorder.evaluated(population.size() - nbKept);
+                genie.sortByScore(population);
+                nbGenerationsWithoutImprovement = 0;
+                bestScore = Integer.MAX_VALUE;
+                if(control != null) control.reset();
+            }
+
+            if(generation % migrationInterval == 0) {
+                migrate(population, inbox, outbox);
+                genie.sortByScore(population);
+            }
+
+            if(control != null) genie.nextGeneration(population, control);
+            else genie.nextGeneration(population, nbGenerationsWithoutImprovement);
+            recorder.evaluated(population.size());
+        }
+
+        recorder.finish(false);
+    }
+
+    // population must be sorted
+    private void migrate(Arena population, ConcurrentLinkedQueue<Sudoku> inbox, ConcurrentLinkedQueue<Sudoku> outbox) {
+        int nb = Math.min(nbMigrants, population.size() / 2);
+
+        // copies, so no individual is ever reachable from two threads
+        for(int rank = 0; rank < nb; rank++){
+            outbox.offer(population.toSudoku(population.ranked(rank)));
+        }
+
+        Sudoku migrant;
+        for(int rank = population.size() - 1; rank >= nb && (migrant = inbox.poll()) != null; rank--){
+            population.put(population.ranked(rank), migrant);
+        }
+    }
+
+}
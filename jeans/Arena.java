@@ -0,0 +1,306 @@
+package jeans;
+
+import game.Sudoku;
+import game.Template;
+import metrics.Phase;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A whole population held as primitives: the cell values of every individual back to back in one
+ * byte array, with a parallel array of scores. Individuals are addressed by index.
+ *
+ * There are two such buffers. Each generation reads parents from the current one and writes
+ * children into the next one, then swap() exchanges their roles, so once an arena exists evolving
+ * it allocates nothing. Per-worker Sudoku workspaces are used to mutate and score a child before
+ * it is stored back.
+ */
+public final class Arena {
+
+    private final Template template;
+    private final int size;
+    private final int cells;
+
+    private byte[] values;
+    private int[] scores;
+    private byte[] nextValues;
+    private int[] nextScores;
+
+    // individuals of the current buffer best first, valid after sort()
+    private final int[] order;
+    private final int[] scoreStarts;
+
+    // filled by selection strategies that fix their draws once per generation
+    private final int[] matingPool;
+
+    private final Sudoku[] workspaces;
+
+    // each worker's counters, updated for every child: nanoseconds spent in each Phase, then for each
+    // Operator the children it produced and how many of them it improved. A worker's counters start at
+    // COUNTER_PAD + (worker * COUNTER_STRIDE); 16 longs is two cache lines, and the array header, which
+    // is not line-aligned, and its end are padded as much, so no two workers' counters ever share a line
+    private static final int COUNTER_STRIDE = 16;
+    private static final int COUNTER_PAD = 16;
+    private static final int OUTCOME_OFFSET = Phase.values().length;
+    private final long[] counters;
+
+    public Arena(Template template, int size, int nbWorkers) {
+        this.template = template;
+        this.size = size;
+        this.cells = template.getPuzzle().size();
+
+        this.values = new byte[size * this.cells];
+        this.scores = new int[size];
+        this.nextValues = new byte[size * this.cells];
+        this.nextScores = new int[size];
+
+        this.order = new int[size];
+        this.scoreStarts = new int[(3 * this.cells) + 2]; // no grid can score more than 3 duplicates per cell
+        this.matingPool = new int[size];
+
+        this.workspaces = new Sudoku[Math.max(1, nbWorkers)];
+        for(int w = 0; w < this.workspaces.length; w++){
+            this.workspaces[w] = this.template.newIndividual();
+        }
+        if(OUTCOME_OFFSET + (2 * Operator.values().length) > COUNTER_STRIDE) throw new IllegalStateException("Too many counters per worker");
+        this.counters = new long[(2 * COUNTER_PAD) + (this.workspaces.length * COUNTER_STRIDE)];
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    /** The compiled puzzle every individual is made from. */
+    public Template getTemplate() {
+        return this.template;
+    }
+
+    /** A scratch grid for the given worker, sharing the template's locked cells. */
+    public Sudoku workspace(int worker) {
+        return this.workspaces[worker];
+    }
+
+    public int getScore(int individual) {
+        return this.scores[individual];
+    }
+
+    /** The individual at the given rank of the last sort(), 0 being the best. */
+    public int ranked(int rank) {
+        return this.order[rank];
+    }
+
+    public int best() {
+        return this.order[0];
+    }
+
+    /** Ranks the current buffer by score; scores are small ints, so this is a counting sort. */
+    public void sort() {
+        int maxScore = 0;
+        for(int i = 0; i < this.size; i++){
+            maxScore = Math.max(maxScore, this.scores[i]);
+        }
+
+        for(int score = 0; score <= maxScore + 1; score++){
+            this.scoreStarts[score] = 0;
+        }
+        for(int i = 0; i < this.size; i++){
+            this.scoreStarts[this.scores[i] + 1]++;
+        }
+        for(int score = 1; score <= maxScore + 1; score++){
+            this.scoreStarts[score] += this.scoreStarts[score - 1];
+        }
+        for(int i = 0; i < this.size; i++){
+            this.order[this.scoreStarts[this.scores[i]]++] = i;
+        }
+    }
+
+    /** One slot per individual, for a Selection to fill in prepare() and read back in select(). */
+    public int[] getMatingPool() {
+        return this.matingPool;
+    }
+
+    public double meanScore() {
+        long total = 0;
+        for(int i = 0; i < this.size; i++){
+            total += this.scores[i];
+        }
+        return (double) total / this.size;
+    }
+
+    /**
+     * Share of free cells where individuals differ from the best one, averaged over up to sampleSize
+     * individuals spread evenly through the current buffer. 0 once the population has converged.
+     */
+    public double diversity(int sampleSize) {
+        int best = this.best();
+        int bestOffset = best * this.cells;
+        int nbFree = this.freeCellCount();
+        if(nbFree == 0) return 0;
+
+        int nbSamples = Math.min(sampleSize, this.size);
+        long differences = 0;
+        for(int s = 0; s < nbSamples; s++){
+            int offset = (int) ((long) this.size * s / nbSamples) * this.cells;
+            for(int cell = 0; cell < this.cells; cell++){
+                if(this.values[offset + cell] != this.values[bestOffset + cell]) differences++;
+            }
+        }
+        return (double) differences / ((long) nbSamples * nbFree);
+    }
+
+    /** Cells of the template that are neither given nor marked, the only ones that differ between individuals. */
+    public int freeCellCount() {
+        int nbFree = 0;
+        for(int b = 0; b < this.template.getPuzzle().getGroupSize(); b++){
+            nbFree += this.template.getFreeCells(b).length;
+        }
+        return nbFree;
+    }
+
+    /** Counts time spent by a worker in a phase; each worker has its own slots, so no locking is needed. */
+    public void addTime(int worker, Phase phase, long nanos) {
+        this.counters[COUNTER_PAD + (worker * COUNTER_STRIDE) + phase.ordinal()] += nanos;
+    }
+
+    /** Time spent in each phase since the last call, summed over workers and indexed by Phase ordinal. */
+    public long[] drainPhaseTimes() {
+        int nbPhases = Phase.values().length;
+        long[] total = new long[nbPhases];
+        for(int worker = 0; worker < this.workspaces.length; worker++){
+            int block = COUNTER_PAD + (worker * COUNTER_STRIDE);
+            for(int phase = 0; phase < nbPhases; phase++){
+                total[phase] += this.counters[block + phase];
+                this.counters[block + phase] = 0;
+            }
+        }
+        return total;
+    }
+
+    /** Counts one application of an operator by a worker, and whether it improved on what it started from. */
+    public void addOutcome(int worker, Operator operator, boolean improved) {
+        int slot = COUNTER_PAD + (worker * COUNTER_STRIDE) + OUTCOME_OFFSET + (2 * operator.ordinal());
+        this.counters[slot]++;
+        if(improved) this.counters[slot + 1]++;
+    }
+
+    /** Share of applications of each Operator that improved since the last call, indexed by ordinal; NaN if none were counted. */
+    public double[] drainSuccessRates() {
+        int nbOperators = Operator.values().length;
+        long[] applied = new long[nbOperators];
+        long[] improved = new long[nbOperators];
+        for(int worker = 0; worker < this.workspaces.length; worker++){
+            for(int operator = 0; operator < nbOperators; operator++){
+                int slot = COUNTER_PAD + (worker * COUNTER_STRIDE) + OUTCOME_OFFSET + (2 * operator);
+                applied[operator] += this.counters[slot];
+                improved[operator] += this.counters[slot + 1];
+                this.counters[slot] = 0;
+                this.counters[slot + 1] = 0;
+            }
+        }
+
+        double[] rates = new double[nbOperators];
+        for(int operator = 0; operator < nbOperators; operator++){
+            rates[operator] = applied[operator] == 0 ? Double.NaN : (double) improved[operator] / applied[operator];
+        }
+        return rates;
+    }
+
+    /** A standalone Sudoku holding a copy of the individual. */
+    public Sudoku toSudoku(int individual) {
+        Sudoku sudoku = this.template.newIndividual();
+        sudoku.load(this.values, individual * this.cells);
+        return sudoku;
+    }
+
+    /** Overwrites an individual of the current buffer with the grid's values and score. */
+    public void put(int individual, Sudoku sudoku) {
+        sudoku.store(this.values, individual * this.cells);
+        this.scores[individual] = sudoku.getScore();
+    }
+
+    /** Overwrites an individual of the next buffer with the grid's values and score. */
+    public void putNext(int individual, Sudoku sudoku) {
+        sudoku.store(this.nextValues, individual * this.cells);
+        this.nextScores[individual] = sudoku.getScore();
+    }
+
+    /** Loads an individual of the current buffer into the grid. */
+    public void load(int individual, Sudoku sudoku) {
+        sudoku.load(this.values, individual * this.cells);
+    }
+
+    /** Loads an individual of the next buffer into the grid. */
+    public void loadNext(int individual, Sudoku sudoku) {
+        sudoku.load(this.nextValues, individual * this.cells);
+    }
+
+    /** Copies the given cells of a parent in the current buffer into a child in the next buffer. */
+    public void inherit(int child, int parent, int[] cells) {
+        int childOffset = child * this.cells;
+        int parentOffset = parent * this.cells;
+        for(int cell : cells){
+            this.nextValues[childOffset + cell] = this.values[parentOffset + cell];
+        }
+    }
+
+    /**
+     * Copies the nbKept best individuals of the last sort() into the first slots of the next buffer and
+     * makes it current. The remaining slots hold stale individuals until they are overwritten.
+     */
+    public void keepBest(int nbKept) {
+        for(int rank = 0; rank < nbKept; rank++){
+            int individual = this.order[rank];
+            System.arraycopy(this.values, individual * this.cells, this.nextValues, rank * this.cells, this.cells);
+            this.nextScores[rank] = this.scores[individual];
+        }
+        this.swap();
+    }
+
+    /** Writes the free cells of every individual of the current buffer, box by box, then every score. */
+    public void write(ByteBuffer out) {
+        int groupSize = this.template.getPuzzle().getGroupSize();
+        for(int i = 0; i < this.size; i++){
+            int offset = i * this.cells;
+            for(int b = 0; b < groupSize; b++){
+                for(int cell : this.template.getFreeCells(b)){
+                    out.put(this.values[offset + cell]);
+                }
+            }
+        }
+        for(int i = 0; i < this.size; i++){
+            out.putInt(this.scores[i]);
+        }
+    }
+
+    /** Reads what write() wrote into the current buffer; locked cells are taken from the template. */
+    public void read(ByteBuffer in) {
+        byte[] locked = new byte[this.cells];
+        this.template.getPuzzle().store(locked, 0);
+
+        int groupSize = this.template.getPuzzle().getGroupSize();
+        for(int i = 0; i < this.size; i++){
+            int offset = i * this.cells;
+            System.arraycopy(locked, 0, this.values, offset, this.cells);
+            for(int b = 0; b < groupSize; b++){
+                for(int cell : this.template.getFreeCells(b)){
+                    this.values[offset + cell] = in.get();
+                }
+            }
+        }
+        for(int i = 0; i < this.size; i++){
+            this.scores[i] = in.getInt();
+        }
+    }
+
+    /** Makes the next buffer current, and the current one free for the following generation. */
+    public void swap() {
+        byte[] v = this.values;
+        this.values = this.nextValues;
+        this.nextValues = v;
+
+        int[] s = this.scores;
+        this.scores = this.nextScores;
+        this.nextScores = s;
+    }
+
+}
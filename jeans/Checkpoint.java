@@ -0,0 +1,116 @@
+package jeans;
+
+import format.PackedFormat;
+import game.Sudoku;
+import game.Template;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A GA run saved between two generations: the locked cells of the puzzle as a PackedFormat record,
+ * the generation counters, then the free cells and score of every individual, one byte per cell.
+ * Locked cells are the same in every individual, so they are stored once.
+ *
+ * A file is written beside the target and moved over it, so a crash mid-write leaves the previous
+ * checkpoint intact. Random draws come from ThreadLocalRandom, whose state cannot be saved, so a
+ * resumed run carries on from the same population but does not replay the same draws.
+ */
+public final class Checkpoint {
+
+    private static final int MAGIC = 0x53474131; // "SGA1"
+
+    private final Arena arena;
+    private final int generation;
+    private final int generationsWithoutImprovement;
+    private final int bestScore;
+
+    private Checkpoint(Arena arena, int generation, int generationsWithoutImprovement, int bestScore) {
+        this.arena = arena;
+        this.generation = generation;
+        this.generationsWithoutImprovement = generationsWithoutImprovement;
+        this.bestScore = bestScore;
+    }
+
+    /** The saved population, in the current buffer of a new arena. */
+    public Arena getArena() {
+        return this.arena;
+    }
+
+    public int getGeneration() {
+        return this.generation;
+    }
+
+    public int getGenerationsWithoutImprovement() {
+        return this.generationsWithoutImprovement;
+    }
+
+    public int getBestScore() {
+        return this.bestScore;
+    }
+
+    /** Saves the current buffer of the arena with the counters of the run. */
+    public static void write(Path path, Arena arena, int generation, int generationsWithoutImprovement, int bestScore) throws IOException {
+        Sudoku puzzle = arena.getTemplate().getPuzzle();
+        int recordLength = PackedFormat.recordLength(puzzle.getBoxLength());
+        int nbFree = arena.freeCellCount();
+
+        ByteBuffer out = ByteBuffer.allocate(4 + recordLength + (5 * 4) + (arena.size() * (nbFree + 4)));
+        out.putInt(MAGIC);
+        PackedFormat.write(puzzle, out);
+        out.putInt(generation);
+        out.putInt(generationsWithoutImprovement);
+        out.putInt(bestScore);
+        out.putInt(arena.size());
+        out.putInt(nbFree);
+        arena.write(out);
+        out.flip();
+
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try(FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)){
+            while(out.hasRemaining()) {
+                channel.write(out);
+            }
+            channel.force(false);
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** Reads a checkpoint back into a new arena with workspaces for nbWorkers. */
+    public static Checkpoint read(Path path, int nbWorkers) throws IOException {
+        ByteBuffer in;
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)){
+            in = ByteBuffer.allocate((int) channel.size());
+            while(in.hasRemaining()) {
+                if(channel.read(in) < 0) throw new IOException("Checkpoint " + path + " is truncated");
+            }
+        }
+        in.flip();
+
+        try {
+            if(in.getInt() != MAGIC) throw new IOException(path + " is not a checkpoint");
+
+            int[] grid = PackedFormat.read(in);
+            int generation = in.getInt();
+            int generationsWithoutImprovement = in.getInt();
+            int bestScore = in.getInt();
+            int size = in.getInt();
+            int nbFree = in.getInt();
+
+            Arena arena = new Arena(Template.compile(new Sudoku(grid)), size, nbWorkers);
+            if(arena.freeCellCount() != nbFree) throw new IOException("Checkpoint " + path + " does not match its puzzle");
+            arena.read(in);
+
+            return new Checkpoint(arena, generation, generationsWithoutImprovement, bestScore);
+        }
+        catch(RuntimeException e){ // BufferUnderflowException, or a bad grid
+            throw new IOException("Checkpoint " + path + " is corrupt", e);
+        }
+    }
+
+}
@@ -1,31 +1,74 @@
 package jeans;
 
-import game.Group;
+import game.Mutation;
 import game.Sudoku;
-
-import java.lang.reflect.InvocationTargetException;
-import java.util.*;
+import game.Template;
+import metrics.AsyncListener;
+import metrics.ConsoleListener;
+import metrics.Phase;
+import metrics.SolverListener;
+import solver.Solver;
+import solver.Solvers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.ThreadLocalRandom;
 
-public class Genie {
+public class Genie implements Solver {
 
-    private Sudoku original;
+    private final int populationSize;
+    private int nbChildren;
+    private int maxNbGenerations;
 
-    private Integer populationSize;
-    private Double selectionRate;
-    private Double randomSelectionRate;
-    private Integer nbChildren;
-    private Integer maxNbGenerations;
+    private int maxNbGenerationsWithoutImprovement;
 
-    private Integer maxNbGenerationsWithoutImprovement;
-    private Long startTime;
+    // how parents are drawn from the sorted population; truncation on the two rates above unless set
+    private Selection selection;
 
-    public static void main(String[] args) {
-        new Genie();
-    }
+    // how mutation chooses the cells it swaps
+    private Mutation mutation = Mutation.CONFLICTS;
+    private double conflictBias = Mutation.DEFAULT_CONFLICT_BIAS;
 
-    public Genie(){
-        Integer[] grid = new Integer[]{
+    // memetic step: tabu search on the nbElite best of each generation, off while nbElite is 0
+    private int nbElite = 0;
+    private int localSearchSteps = 100;
+    private int tabuTenure = 10;
+
+    // progress reports; without one nothing is measured and nothing is printed
+    private SolverListener listener;
+
+    // where the population is saved every checkpointInterval generations, if anywhere
+    private Path checkpointPath;
+    private int checkpointInterval = 50;
+
+    // individuals carried over when a stalled population restarts; 0 restarts from scratch
+    private int nbKeptOnRestart = 0;
+
+    // a run gives up after this long, checked once per generation; 0 for no limit
+    private long timeLimitNanos = 0;
+
+    // whether each run adapts its settings with an AdaptiveControl instead of using the fixed ones
+    private boolean adaptive = false;
+
+    // creation, mating and mutation are split into one contiguous slice of the population per worker;
+    // without a pool everything runs on the calling thread
+    private final ForkJoinPool pool;
+
+    // main shows off the GA, and its -v, -adaptive and -checkpoint options only act on a GA, so it
+    // defaults to one; batch tools default to Solvers.DEFAULT, the fastest on ordinary puzzles
+    private static final String MAIN_SOLVER = "ga";
+
+    /**
+     * Usage: Genie [-v] [-adaptive] [-checkpoint file] [solver], where solver is one of the names known to Solvers
+     * (default: ga), -v prints GA progress, -adaptive turns on AdaptiveControl and -checkpoint saves the GA to the
+     * file as it runs, resuming from it if it exists. Only the ga solver can be checkpointed.
+     */
+    public static void main(String[] args) throws IOException {
+        int[] grid = new int[]{
                 7, 9, 0,   0, 0, 0,   0, 0, 3,
                 0, 0, 0,   0, 0, 0,   0, 6, 0,
                 8, 0, 1,   0, 0, 4,   0, 0, 2,
@@ -39,37 +82,51 @@ public class Genie {
                 0, 0, 0,   0, 0, 0,   0, 0, 0
         };
 
-        new Genie(grid, 6000, 0.3, 0.3, 10, 1000, 30);
-    }
-
-    public Genie(
-        Integer[] grid,
-        Integer populationSize,
-        Double selectionRate,
-        Double randomSelectionRate,
-        Integer nbChildren,
-        Integer maxNbGenerations,
-        Integer maxNbGenerationsWithoutImprovement
-    ) {
-        this.startExecutionTimer();
-
-        this.populationSize = populationSize;
-        this.selectionRate = selectionRate;
-        this.randomSelectionRate = randomSelectionRate;
-        this.nbChildren = nbChildren;
-        this.maxNbGenerations = maxNbGenerations;
-        this.maxNbGenerationsWithoutImprovement = maxNbGenerationsWithoutImprovement;
+        long startTime = System.currentTimeMillis();
 
-        original = new Sudoku(grid);
+        Sudoku original = new Sudoku(grid);
 
-        if(original.validate().equals(Boolean.TRUE)){
+        if(original.validate()){
             System.out.println("Solved Via Marking");
             original.display();
         }
         else {
-            System.out.println("Starting GA Solution");
+            boolean verbose = false;
+            boolean adaptive = false;
+            Path checkpoint = null;
+            String name = MAIN_SOLVER;
+            for(int a = 0; a < args.length; a++){
+                if(args[a].equals("-v")) verbose = true;
+                else if(args[a].equals("-adaptive")) adaptive = true;
+                else if(args[a].equals("-checkpoint") && a + 1 < args.length) checkpoint = Path.of(args[++a]);
+                else name = args[a];
+            }
 
-            Sudoku solution = solveGA(original);
+            Solver solver = Solvers.byName(name);
+            if(checkpoint != null && !(solver instanceof Genie)) {
+                System.err.println("-checkpoint only works with the ga solver, not " + name);
+                System.exit(1);
+            }
+            AsyncListener console = verbose ? new AsyncListener(new ConsoleListener(10)) : null;
+            Genie ga = solver instanceof Genie ? (Genie) solver : solver instanceof Archipelago ? ((Archipelago) solver).getGenie() : null;
+            if(ga != null) {
+                ga.setListener(console);
+                ga.setAdaptive(adaptive);
+            }
+
+            Sudoku solution;
+            if(checkpoint != null && solver instanceof Genie) {
+                Genie genie = (Genie) solver;
+                genie.setCheckpoint(checkpoint, 50);
+                boolean resuming = Files.exists(checkpoint);
+                System.out.println(String.format("%s %s solution", resuming ? "Resuming" : "Starting", name));
+                solution = resuming ? genie.resume(checkpoint) : genie.solve(original);
+            }
+            else {
+                System.out.println(String.format("Starting %s solution", name));
+                solution = solver.solve(original);
+            }
+            if(console != null) console.close();
 
             if(solution == null){
                 System.err.println("No solution was found.");
@@ -80,171 +137,448 @@ public class Genie {
             }
         }
 
-        this.printExecutionTimer();
+        printExecutionTimer(startTime);
     }
 
-    private Sudoku solveGA(Sudoku origin) {
-        Sudoku[] population;
+    public Genie(){
+        this(6000, 0.3, 0.3, 10, 1000, 30);
+    }
 
-        int overallNbGenerations = 0;
-        while(maxNbGenerations > overallNbGenerations){
-            population = createGeneration(origin);
+    public Genie(
+        int populationSize,
+        double selectionRate,
+        double randomSelectionRate,
+        int nbChildren,
+        int maxNbGenerations,
+        int maxNbGenerationsWithoutImprovement
+    ) {
+        this(populationSize, selectionRate, randomSelectionRate, nbChildren, maxNbGenerations, maxNbGenerationsWithoutImprovement, ForkJoinPool.commonPool());
+    }
 
-            int nbGenerationsWithoutImprovement = 0;
-            int bestScore = 10000;
-            while(maxNbGenerationsWithoutImprovement > nbGenerationsWithoutImprovement){
-                population = sortByScore(population);
+    public Genie(
+        int populationSize,
+        double selectionRate,
+        double randomSelectionRate,
+        int nbChildren,
+        int maxNbGenerations,
+        int maxNbGenerationsWithoutImprovement,
+        ForkJoinPool pool
+    ) {
+        this.pool = pool;
+        this.populationSize = populationSize % 2 == 0 ? populationSize : populationSize + 1; // must be even for matched mating
+        this.selection = new Truncation(selectionRate, randomSelectionRate);
+        this.nbChildren = nbChildren;
+        this.maxNbGenerations = maxNbGenerations;
+        this.maxNbGenerationsWithoutImprovement = maxNbGenerationsWithoutImprovement;
+    }
 
-                if(population[0].validate().equals(Boolean.TRUE)) {
-                    return population[0];
-                }
+    @Override
+    public Sudoku solve(Sudoku puzzle) {
+        if(puzzle.validate()) return puzzle.copy();
+        return solveGA(puzzle);
+    }
 
-                if(bestScore <= population[0].getScore()){
-                    nbGenerationsWithoutImprovement++;
-                }
-                else {
-                    bestScore = population[0].getScore();
-                    nbGenerationsWithoutImprovement = 0;
-                }
+    private Sudoku solveGA(Sudoku origin) {
+        Arena arena = newArena(origin);
+        if(arena.getTemplate().isContradicted()) return null; // Mark proved there is no solution
+        createGeneration(arena);
+        return evolve(arena, 0, 0, 10000);
+    }
 
-                population = matePopulation(population);
-                population = mutatePopulation(population, nbGenerationsWithoutImprovement);
+    /**
+     * Carries on a run saved by setCheckpoint(), with this Genie's settings. The population and the
+     * generation counters are restored; random draws start afresh.
+     */
+    public Sudoku resume(Path checkpointPath) throws IOException {
+        Checkpoint checkpoint = Checkpoint.read(checkpointPath, pool == null ? 1 : pool.getParallelism());
+        if(checkpoint.getArena().getTemplate().isContradicted()) return null;
+        return evolve(checkpoint.getArena(), checkpoint.getGeneration(), checkpoint.getGenerationsWithoutImprovement(), checkpoint.getBestScore());
+    }
 
-                overallNbGenerations++;
+    // evolves a scored population until it holds a solution or maxNbGenerations have passed, restarting on stalls
+    private Sudoku evolve(Arena arena, int overallNbGenerations, int nbGenerationsWithoutImprovement, int bestScore) {
+        Recorder recorder = new Recorder(listener, 0);
+        recorder.evaluated(arena.size());
+        AdaptiveControl control = adaptive ? newControl() : null;
+        long deadline = timeLimitNanos > 0 ? System.nanoTime() + timeLimitNanos : 0;
+
+        while(maxNbGenerations > overallNbGenerations && (deadline == 0 || System.nanoTime() < deadline)){
+            sortByScore(arena);
+            overallNbGenerations++;
+            recorder.generation(arena, overallNbGenerations);
+
+            if(arena.getScore(arena.best()) == 0) {
+                recorder.finish(true);
+                return arena.toSudoku(arena.best());
+            }
 
-                System.out.println(String.format("Generation %s has a best score of %s", overallNbGenerations, bestScore));
-                System.out.println(" ");
-                population[0].display();
+            boolean improved = bestScore > arena.getScore(arena.best());
+            if(improved){
+                bestScore = arena.getScore(arena.best());
+                nbGenerationsWithoutImprovement = 0;
+            }
+            else {
+                nbGenerationsWithoutImprovement++;
+            }
+            if(control != null) control.update(arena, improved);
+
+            if(control != null ? control.shouldRestart() : nbGenerationsWithoutImprovement >= maxNbGenerationsWithoutImprovement) {
+                recorder.restart(overallNbGenerations);
+                int nbKept = Math.min(nbKeptOnRestart, arena.size());
+                arena.keepBest(nbKept);
+                createGeneration(arena, nbKept);
+                recorder.evaluated(arena.size() - nbKept);
+                nbGenerationsWithoutImprovement = 0;
+                bestScore = 10000;
+                if(control != null) control.reset();
+            }
+            else {
+                if(control != null) nextGeneration(arena, control);
+                else nextGeneration(arena, nbGenerationsWithoutImprovement);
+                recorder.evaluated(arena.size());
+            }
+
+            if(checkpointPath != null && overallNbGenerations % checkpointInterval == 0) {
+                try {
+                    Checkpoint.write(checkpointPath, arena, overallNbGenerations, nbGenerationsWithoutImprovement, bestScore);
+                }
+                catch(IOException e){
+                    throw new UncheckedIOException(e);
+                }
             }
-            System.out.println(String.format("Restarting: %s number of generations", overallNbGenerations));
         }
 
+        recorder.finish(false);
         return null;
     }
 
-    private Sudoku[] createGeneration(Sudoku origin) {
-        Integer[] grid = origin.getOriginalGrid();
-        populationSize = populationSize % 2 == 0 ? populationSize : populationSize+1; // must be even for matched mating
+    int getMaxNbGenerations() {
+        return maxNbGenerations;
+    }
 
-        Sudoku[] cousins = new Sudoku[populationSize];
+    int getMaxNbGenerationsWithoutImprovement() {
+        return maxNbGenerationsWithoutImprovement;
+    }
 
-        for(int i = 0; i < populationSize; i++){
-            cousins[i] = (new Sudoku(grid)).fillBoxes();
-        }
+    /**
+     * An empty population for the puzzle, with a workspace for every worker of this Genie's pool.
+     * The puzzle is compiled into a Template here, once; no individual ever runs Mark again.
+     */
+    public Arena newArena(Sudoku origin) {
+        return new Arena(Template.compile(origin), populationSize, pool == null ? 1 : pool.getParallelism());
+    }
 
-        return cousins;
+    public Selection getSelection() {
+        return selection;
     }
 
-    private Sudoku[] sortByScore(Sudoku[] population){
-        return Arrays.stream(population)
-            .sorted((sudoku1, sudoku2) -> {
-                // Compare by the scores returned by getScore() method
-                int score1 = 0;
-                int score2 = 0;
-                try {
-                    score1 = sudoku1.getScore();
-                    score2 = sudoku2.getScore();
-                } catch (Exception e) {
-                    throw new RuntimeException(e);
-                }
-                return Integer.compare(score1, score2);
-            }).toArray(Sudoku[]::new);
+    public void setSelection(Selection selection) {
+        this.selection = selection;
+    }
 
+    public Mutation getMutation() {
+        return mutation;
     }
 
-    private Sudoku[] matePopulation(Sudoku[] population){
-        Sudoku[] newPopulation = new Sudoku[population.length];
-        Sudoku[] children;
-        for(int i = 0; i < population.length; i = i + nbChildren){
-            children = mate( getParents(population) );
-            System.arraycopy(children, 0, newPopulation, i, (i + children.length > population.length ? population.length - i : children.length));
-        }
+    public void setMutation(Mutation mutation) {
+        this.mutation = mutation;
+    }
+
+    public double getConflictBias() {
+        return conflictBias;
+    }
 
-        return newPopulation;
+    /** How strongly CONFLICTS mutation favours conflicting boxes and cells, from 0 (not at all) to 1 (only those). */
+    public void setConflictBias(double conflictBias) {
+        this.conflictBias = conflictBias;
     }
 
-    private Sudoku[] getParents(Sudoku[] population){
-        List<Sudoku> parents = new ArrayList<>();
+    public int getNbElite() {
+        return nbElite;
+    }
 
-        int nbBestToSelect = (int) (population.length * selectionRate);
-        int nbRandomToSelect = (int) (population.length * randomSelectionRate);
+    public int getLocalSearchSteps() {
+        return localSearchSteps;
+    }
 
-        for(int i = 0; i < nbBestToSelect; i++){
-            parents.add(population[i]);
-        }
+    /**
+     * Turns on the memetic step: after each sort, the nbElite best individuals get up to localSearchSteps
+     * moves of tabu search and the population is sorted again. An nbElite of 0 turns it off.
+     */
+    public void setMemetic(int nbElite, int localSearchSteps) {
+        this.nbElite = nbElite;
+        this.localSearchSteps = localSearchSteps;
+    }
+
+    public void setTabuTenure(int tabuTenure) {
+        this.tabuTenure = tabuTenure;
+    }
+
+    public Path getCheckpointPath() {
+        return checkpointPath;
+    }
+
+    /**
+     * Saves the population to the file every interval generations, replacing the previous save, so that
+     * resume() can carry on after a crash. A null path turns checkpoints off.
+     */
+    public void setCheckpoint(Path checkpointPath, int interval) {
+        this.checkpointPath = checkpointPath;
+        this.checkpointInterval = interval;
+    }
+
+    public int getNbKeptOnRestart() {
+        return nbKeptOnRestart;
+    }
 
-        for(int j = 0; j < nbRandomToSelect; j++){
-            parents.add(population[ThreadLocalRandom.current().nextInt(0, population.length)]);
+    /**
+     * Warm restarts: when the best score has stalled, the nbKept best individuals survive and only the
+     * rest of the population is drawn afresh. 0, the default, restarts from scratch.
+     */
+    public void setWarmRestart(int nbKept) {
+        this.nbKeptOnRestart = nbKept;
+    }
+
+    public long getTimeLimitMillis() {
+        return timeLimitNanos / 1_000_000;
+    }
+
+    /** Makes solve() and resume() give up, returning null, once a run has lasted this long. 0 removes the limit. */
+    public void setTimeLimitMillis(long millis) {
+        this.timeLimitNanos = millis * 1_000_000;
+    }
+
+    public boolean isAdaptive() {
+        return adaptive;
+    }
+
+    /**
+     * With adaptive on, every run follows an AdaptiveControl: mutation rate, selection and children per
+     * mating are set each generation from measured progress, and restarts come from diversity collapse.
+     * The fixed selection, mutation schedule and nbChildren are then only starting points or unused.
+     */
+    public void setAdaptive(boolean adaptive) {
+        this.adaptive = adaptive;
+    }
+
+    /** A control for one population, starting from this Genie's truncation rates, or the usual ones if it selects otherwise. */
+    public AdaptiveControl newControl() {
+        if(selection instanceof Truncation) {
+            Truncation truncation = (Truncation) selection;
+            return new AdaptiveControl(truncation.getSelectionRate(), truncation.getRandomSelectionRate(), nbChildren);
         }
+        return new AdaptiveControl(0.3, 0.3, nbChildren);
+    }
+
+    public SolverListener getListener() {
+        return listener;
+    }
+
+    /**
+     * Receives a GenerationStats for every generation, with phase times measured while one is set.
+     * It is called on the solving thread; wrap slow sinks in an AsyncListener. Null turns reporting off.
+     */
+    public void setListener(SolverListener listener) {
+        this.listener = listener;
+    }
 
-        int p1;
-        int p2;
+    /** Fills the arena's current buffer with random box-filled individuals stamped from its template. */
+    public void createGeneration(Arena arena) {
+        createGeneration(arena, 0);
+    }
+
+    // fills every slot from the given one on, leaving the first ones alone
+    void createGeneration(Arena arena, int first) {
+        Template template = arena.getTemplate();
+
+        forEachSlice(arena.size() - first, (worker, from, to) -> {
+            Sudoku workspace = arena.workspace(worker);
+            for(int i = first + from; i < first + to; i++){
+                arena.put(i, template.fill(workspace));
+            }
+        });
+    }
+
+    /** Ranks the population, running the memetic step first if it is on. */
+    public void sortByScore(Arena arena){
+        boolean timed = listener != null;
 
-        do {
-            p1 = ThreadLocalRandom.current().nextInt(0, parents.size());
-            p2 = ThreadLocalRandom.current().nextInt(0, parents.size());
-        } while(p1 == p2);
+        long start = now(timed);
+        arena.sort();
+        if(timed) arena.addTime(0, Phase.SORT, now(timed) - start);
 
+        if(nbElite > 0) {
+            start = now(timed);
+            improveElite(arena);
+            if(timed) arena.addTime(0, Phase.LOCAL_SEARCH, now(timed) - start);
+
+            start = now(timed);
+            arena.sort();
+            if(timed) arena.addTime(0, Phase.SORT, now(timed) - start);
+        }
+    }
 
-        return new Sudoku[]{parents.get(p1), parents.get(p2)};
+    // the elite are distinct individuals, so slices of them can be searched in place side by side
+    private void improveElite(Arena arena){
+        int nb = Math.min(nbElite, arena.size());
+        int steps = localSearchSteps;
+        int tenure = tabuTenure;
+        int cells = arena.getTemplate().getPuzzle().size();
+
+        forEachSlice(nb, (worker, from, to) -> {
+            Sudoku workspace = arena.workspace(worker);
+            TabuSearch search = new TabuSearch(cells, tenure);
+            for(int rank = from; rank < to; rank++){
+                int individual = arena.ranked(rank);
+                arena.load(individual, workspace);
+                search.improve(workspace, steps);
+                arena.put(individual, workspace);
+            }
+        });
     }
 
-    private Sudoku[] mate(Sudoku[] parents){
-        Sudoku[] children = new Sudoku[nbChildren];
+    /**
+     * Replaces a sorted population by its children, mutated harder the longer the best score has not improved.
+     * Each mating writes its own run of nbChildren slots of the next buffer, so slices of matings never overlap.
+     */
+    public void nextGeneration(Arena arena, int nbGenerationsWithoutImprovement) {
+        breed(arena, selection, getMutationRate(nbGenerationsWithoutImprovement), nbChildren, false);
+    }
 
-        // caching box size
-        Integer maxCrossoverPoint = parents[0].getGroupSize();
+    /** Replaces a sorted population by its children, with the settings of the control, and counts how each operator fared. */
+    public void nextGeneration(Arena arena, AdaptiveControl control) {
+        breed(arena, control.getSelection(), control.getMutationRate(), control.getNbChildren(), true);
+    }
 
-        try {
-            // create a number of children
-            for(int j = 0; j < nbChildren; j++){
-                children[j] = parents[0].copyLocked();
+    private void breed(Arena arena, Selection selection, double mutationRate, int nbChildren, boolean counted) {
+        int size = arena.size();
+        int nbMatings = (size + nbChildren - 1) / nbChildren;
+        Mutation mutation = this.mutation;
+        double conflictBias = this.conflictBias;
+        boolean timed = listener != null;
+
+        long start = now(timed);
+        selection.prepare(arena);
+        if(timed) arena.addTime(0, Phase.SELECT, now(timed) - start);
+
+        forEachSlice(nbMatings, (worker, from, to) -> {
+            Sudoku workspace = arena.workspace(worker);
+            for(int m = from; m < to; m++){
+                int firstChild = m * nbChildren;
+                int lastChild = Math.min(firstChild + nbChildren, size);
+
+                long t0 = now(timed);
+                int parent1 = selection.select(arena);
+                int parent2 = getSecondParent(arena, selection, parent1);
+
+                long t1 = now(timed);
+                mate(arena, parent1, parent2, firstChild, lastChild);
+
+                long t2 = now(timed);
+                if(timed) {
+                    arena.addTime(worker, Phase.SELECT, t1 - t0);
+                    arena.addTime(worker, Phase.MATE, t2 - t1);
+                }
 
-                // for all the crossOverPoints
-                for(int i = 0; i < maxCrossoverPoint; i++){
-                    int crossoverPoint = ThreadLocalRandom.current().nextInt(0, maxCrossoverPoint);
-                    children[j].setBox(i, getCrossover(i, crossoverPoint, parents[0], parents[1]));
+                for(int child = firstChild; child < lastChild; child++){
+                    // loading rebuilds the child's counts, which is what scores it
+                    long c0 = now(timed);
+                    arena.loadNext(child, workspace);
+                    int crossed = workspace.getScore();
+                    long c1 = now(timed);
+                    boolean mutated = ThreadLocalRandom.current().nextInt(0, 101) <= mutationRate * 100;
+                    if(mutated) workspace.mutate(mutationRate, mutation, conflictBias);
+                    long c2 = now(timed);
+                    arena.putNext(child, workspace);
+
+                    if(counted) {
+                        arena.addOutcome(worker, Operator.CROSSOVER, crossed < Math.min(arena.getScore(parent1), arena.getScore(parent2)));
+                        if(mutated) arena.addOutcome(worker, Operator.MUTATION, workspace.getScore() < crossed);
+                    }
+
+                    if(timed) {
+                        arena.addTime(worker, Phase.SCORE, (c1 - c0) + (now(timed) - c2));
+                        arena.addTime(worker, Phase.MUTATE, c2 - c1);
+                    }
                 }
             }
-        }
-        catch(IllegalAccessException | InvocationTargetException e){
-            throw new RuntimeException(e);
-        }
+        });
 
-        return children;
+        arena.swap();
     }
 
-    private Group getCrossover(int groupIndex, int crossoverPoint, Sudoku parent1, Sudoku parent2) throws IllegalAccessException, InvocationTargetException {
-        Sudoku parent = groupIndex > crossoverPoint ? parent1 : parent2; // take from one or the other parent based on the crossover point
-        return parent.getBox( groupIndex );
+    // a few redraws keep an individual from mating with itself, without looping on a converged population
+    private int getSecondParent(Arena arena, Selection selection, int parent1){
+        int parent2 = selection.select(arena);
+        for(int attempt = 0; attempt < 3 && parent2 == parent1; attempt++){
+            parent2 = selection.select(arena);
+        }
+        return parent2;
     }
 
-    private Sudoku[] mutatePopulation(Sudoku[] population, Integer generationNb) {
-        Sudoku[] mutatedPopulation = new Sudoku[population.length];
-        Double mutationRate = getMutationRate(generationNb);
-        System.out.println(String.format("Mutation Rate: %s", mutationRate));
-        for(int i = 0; i < population.length; i++){
-            mutatedPopulation[i] = ThreadLocalRandom.current().nextInt(0, 101) <= mutationRate * 100 ? population[i].mutate(mutationRate) : population[i];
+    /** Writes children [firstChild, lastChild) of the next buffer, each box taken from one parent or the other. */
+    public void mate(Arena arena, int parent1, int parent2, int firstChild, int lastChild){
+        // caching box size
+        int maxCrossoverPoint = arena.getTemplate().getPuzzle().getGroupSize();
+        int[][] boxes = arena.getTemplate().getPuzzle().getLayout().boxes;
+
+        // create a number of children
+        for(int child = firstChild; child < lastChild; child++){
+            // for all the crossOverPoints
+            for(int i = 0; i < maxCrossoverPoint; i++){
+                int crossoverPoint = ThreadLocalRandom.current().nextInt(0, maxCrossoverPoint);
+                arena.inherit(child, getCrossover(i, crossoverPoint, parent1, parent2), boxes[i]);
+            }
         }
-        return mutatedPopulation;
     }
 
-    private Double getMutationRate(Integer generationNb){
-        Double endMutationRate = 1.0;
-        Double startMutationRate = 0.4;
-        Double steepnessCoefficient = 25.0;
-        Double e = 2.71828182845904523536028747135266249775724709369995;
+    private int getCrossover(int groupIndex, int crossoverPoint, int parent1, int parent2) {
+        return groupIndex > crossoverPoint ? parent1 : parent2; // take from one or the other parent based on the crossover point
+    }
+
+    private double getMutationRate(int generationNb){
+        double endMutationRate = 1.0;
+        double startMutationRate = 0.4;
+        double steepnessCoefficient = 25.0;
+        double e = 2.71828182845904523536028747135266249775724709369995;
 
-        Double exp = 6.0 - ((steepnessCoefficient / maxNbGenerationsWithoutImprovement) * generationNb);
+        double exp = 6.0 - ((steepnessCoefficient / maxNbGenerationsWithoutImprovement) * generationNb);
 
         return (endMutationRate - startMutationRate) / (1 + Math.pow(e, exp)) + startMutationRate;
     }
 
-    private void startExecutionTimer(){
-        startTime = System.currentTimeMillis();
+    // the clock is only read when someone is listening
+    private static long now(boolean timed){
+        return timed ? System.nanoTime() : 0;
+    }
+
+    private interface Slice {
+        void run(int worker, int from, int to);
+    }
+
+    // splits [0, n) into one contiguous slice per worker of the pool and waits for all of them
+    private void forEachSlice(int n, Slice slice){
+        if(pool == null) {
+            slice.run(0, 0, n);
+            return;
+        }
+
+        int nbSlices = Math.max(1, Math.min(pool.getParallelism(), n));
+        ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[nbSlices];
+
+        for(int s = 0; s < nbSlices; s++){
+            int from = (int) ((long) n * s / nbSlices);
+            int to = (int) ((long) n * (s + 1) / nbSlices);
+            int worker = s;
+            tasks[s] = pool.submit(() -> slice.run(worker, from, to));
+        }
+
+        for(ForkJoinTask<?> task : tasks){
+            task.join();
+        }
     }
 
-    private void printExecutionTimer(){
+    private static void printExecutionTimer(long startTime){
         long endTime = System.currentTimeMillis();
         long executionTime = endTime - startTime;
 
@@ -263,7 +597,7 @@ public class Genie {
 /*************************************/
 /** MARK SOLVES IN ~10 MILLISECONDS */
 /***********************************/
-//    Integer[] grid = {
+//    int[] grid = {
 //            8, 0, 2,   0, 0, 3,   5, 1, 0,
 //            0, 6, 0,   0, 9, 1,   0, 0, 3,
 //            7, 0, 1,   0, 0, 0,   8, 9, 4,
@@ -277,7 +611,7 @@ public class Genie {
 //            2, 0, 0,   0, 0, 7,   1, 0, 0
 //    };
 
-//Integer[] grid = {
+//int[] grid = {
 //        8, 7, 3,   4, 1, 0,   9, 0, 0,
 //        0, 6, 5,   0, 2, 8,   0, 7, 0,
 //        0, 2, 0,   7, 0, 3,   0, 0, 0,
@@ -291,7 +625,7 @@ public class Genie {
 //        0, 1, 0,   0, 0, 9,   8, 0, 7
 //};
 
-//Integer[] grid = {
+//int[] grid = {
 //        0, 8, 0,   0, 0, 0,   0, 9, 0,
 //        0, 0, 7,   5, 0, 2,   8, 0, 0,
 //        6, 0, 0,   8, 0, 7,   0, 0, 5,
@@ -308,7 +642,7 @@ public class Genie {
 /*******************************************/
 /** ********** SOLVED IN ~ 2 MINS ******** */
 /*******************************************/
-//Integer[] grid = {
+//int[] grid = {
 //        0, 8, 0,   0, 0, 0,   0, 0, 3,
 //        0, 6, 0,   0, 7, 0,   4, 0, 5,
 //        3, 0, 4,   0, 6, 1,   0, 0, 0,
@@ -322,7 +656,7 @@ public class Genie {
 //        0, 0, 6,   0, 0, 0,   0, 5, 7
 //};
 
-//Integer[] grid = {
+//int[] grid = {
 //        4, 0, 0,   0, 0, 0,   0, 0, 1,
 //        0, 1, 6,   9, 0, 7,   0, 0, 8,
 //        9, 2, 0,   0, 1, 0,   0, 5, 0,
@@ -336,7 +670,7 @@ public class Genie {
 //        3, 0, 9,   0, 0, 0,   0, 2, 7
 //};
 
-//Integer[] grid = {
+//int[] grid = {
 //        0, 0, 6,   0, 0, 0,   0, 0, 0,
 //        0, 8, 0,   0, 5, 4,   2, 0, 0,
 //        0, 4, 0,   0, 9, 0,   0, 7, 0,
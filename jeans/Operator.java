@@ -0,0 +1,7 @@
+package jeans;
+
+/** The variation operators whose success AdaptiveControl measures. */
+public enum Operator {
+    CROSSOVER,
+    MUTATION
+}
@@ -0,0 +1,32 @@
+package jeans;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Linear ranking: the chance of drawing an individual falls linearly with its rank, from
+ * pressure times the average at the best to 2 - pressure times the average at the worst.
+ * A pressure of 1 is a uniform draw, 2 the steepest. Drawing inverts the ranking's cumulative
+ * distribution, so it needs no table.
+ */
+public final class RankSelection implements Selection {
+
+    private final double pressure;
+
+    public RankSelection(double pressure) {
+        if(pressure < 1.0 || pressure > 2.0) throw new IllegalArgumentException("Rank pressure must be between 1 and 2");
+        this.pressure = pressure;
+    }
+
+    @Override
+    public int select(Arena arena) {
+        double u = ThreadLocalRandom.current().nextDouble();
+        double s = this.pressure;
+
+        // solves (s - 1)x^2 - sx + u = 0 for the fraction x of the ranking, 0 being the best
+        double x = s == 1.0 ? u : (s - Math.sqrt((s * s) - (4 * (s - 1) * u))) / (2 * (s - 1));
+
+        int rank = Math.min(arena.size() - 1, (int) (x * arena.size()));
+        return arena.ranked(rank);
+    }
+
+}
@@ -0,0 +1,88 @@
+package jeans;
+
+import metrics.GenerationStats;
+import metrics.SolverListener;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Turns one population's progress into listener events. With no listener every method returns
+ * at once, so solvers can call it unconditionally.
+ */
+final class Recorder {
+
+    // individuals sampled when measuring diversity
+    private static final int DIVERSITY_SAMPLE = 64;
+
+    private final SolverListener listener;
+    private final int source;
+    private final long startNanos;
+
+    private long evaluations = 0;
+    private int restarts = 0;
+    // bytes allocated so far by each thread seen at the last sample, by thread id
+    private Map<Long, Long> allocatedByThread = new HashMap<>();
+
+    Recorder(SolverListener listener, int source) {
+        this.listener = listener;
+        this.source = source;
+        this.startNanos = System.nanoTime();
+        allocatedSinceLastSample();
+    }
+
+    /** Counts individuals that were scored. */
+    void evaluated(int nbIndividuals) {
+        this.evaluations += nbIndividuals;
+    }
+
+    /** Reports a sorted population. */
+    void generation(Arena arena, int generation) {
+        if(this.listener == null) return;
+
+        long allocatedThisGeneration = allocatedSinceLastSample();
+
+        this.listener.onGeneration(new GenerationStats(
+            this.source, generation, this.restarts, this.evaluations, System.nanoTime() - this.startNanos,
+            arena.getScore(arena.best()), arena.meanScore(), arena.diversity(DIVERSITY_SAMPLE),
+            allocatedThisGeneration, arena.drainPhaseTimes()
+        ));
+    }
+
+    void restart(int generation) {
+        this.restarts++;
+        if(this.listener != null) this.listener.onRestart(this.source, generation);
+    }
+
+    void finish(boolean solved) {
+        if(this.listener != null) this.listener.onFinish(this.source, solved, System.nanoTime() - this.startNanos);
+    }
+
+    // bytes allocated by every live thread since the last call, or -1 where the JVM does not track it;
+    // a thread that ended in between takes its last bytes with it, so the figure may fall short but is never negative
+    private long allocatedSinceLastSample() {
+        if(this.listener == null) return -1;
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if(!(threads instanceof com.sun.management.ThreadMXBean)) return -1;
+
+        com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) threads;
+        if(!hotspot.isThreadAllocatedMemoryEnabled()) return -1;
+
+        long[] ids = hotspot.getAllThreadIds();
+        long[] bytes = hotspot.getThreadAllocatedBytes(ids);
+        Map<Long, Long> allocated = new HashMap<>(ids.length * 2);
+        long total = 0;
+        for(int t = 0; t < ids.length; t++){
+            if(bytes[t] < 0) continue; // ended since it was listed
+            Long previous = this.allocatedByThread.get(ids[t]);
+            total += Math.max(0, bytes[t] - (previous == null ? 0 : previous));
+            allocated.put(ids[t], bytes[t]);
+        }
+        this.allocatedByThread = allocated;
+        return total;
+    }
+
+}
@@ -0,0 +1,35 @@
+package jeans;
+
+/**
+ * Picks parents out of a sorted Arena. Scores are cached in the arena when an individual is
+ * stored, and sort() ranks them with a counting sort, so strategies only ever read ints.
+ *
+ * prepare() is called once per generation, after sorting and before any draw; select() is then
+ * called concurrently by every worker and must not change shared state. Each draw costs O(1), or
+ * O(k) for a tournament of k.
+ */
+public interface Selection {
+
+    /** Per-generation setup over the sorted arena. Most strategies need none. */
+    default void prepare(Arena arena) {}
+
+    /** An individual of the arena's current buffer. */
+    int select(Arena arena);
+
+    /** Looks strategies up by the names used on command lines, with their usual settings. */
+    static Selection byName(String name) {
+        switch (name) {
+            case "truncation":
+                return new Truncation(0.3, 0.3);
+            case "tournament":
+                return new Tournament(3);
+            case "rank":
+                return new RankSelection(1.8);
+            case "sus":
+                return new UniversalSampling();
+            default:
+                throw new IllegalArgumentException("Unknown selection: " + name + " (expected truncation, tournament, rank or sus)");
+        }
+    }
+
+}
@@ -0,0 +1,99 @@
+package jeans;
+
+import game.Digits;
+import game.Sudoku;
+import game.Template;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Local search over in-box swaps, for polishing the last few conflicts out of a grid. Each step
+ * makes the best swapDelta move among pairs of free cells of a box where at least one of the two
+ * conflicts, even when that move makes the score worse. Cells just moved are tabu for a few steps,
+ * unless moving them again would beat the best score seen, so the search walks out of local minima
+ * instead of swapping the same pair back and forth.
+ *
+ * Boxes keep their digits, so a box-filled grid stays box-filled. An instance holds the scratch
+ * state of one search at a time and must not be shared between threads.
+ */
+public final class TabuSearch {
+
+    private final int tenure;
+    private final int[] tabuUntil;
+    private final byte[] best;
+
+    public TabuSearch(int cells, int tenure) {
+        this.tenure = tenure;
+        this.tabuUntil = new int[cells];
+        this.best = new byte[cells];
+    }
+
+    /** Makes up to maxSteps moves and leaves the grid at the best score found, which is returned. */
+    public int improve(Sudoku grid, int maxSteps) {
+        Template template = grid.getTemplate();
+        int[][] boxes = grid.getLayout().boxes;
+
+        Arrays.fill(this.tabuUntil, 0);
+        int bestScore = grid.getScore();
+        grid.store(this.best, 0);
+
+        for(int step = 1; step <= maxSteps && bestScore > 0; step++){
+            int move1 = -1;
+            int move2 = -1;
+            int moveDelta = Integer.MAX_VALUE;
+            int nbTies = 0;
+
+            for(int b = 0; b < boxes.length; b++){
+                int[] cells = template != null ? template.getFreeCells(b) : boxes[b];
+                for(int i = 0; i < cells.length; i++){
+                    int gi1 = cells[i];
+                    if(grid.isLocked(gi1)) continue;
+                    boolean conflicting = grid.isConflicting(gi1);
+
+                    for(int j = i + 1; j < cells.length; j++){
+                        int gi2 = cells[j];
+                        if(grid.isLocked(gi2) || !(conflicting || grid.isConflicting(gi2))) continue;
+                        if(template != null && !isLegal(template, grid, gi1, gi2)) continue;
+
+                        int delta = grid.swapDelta(gi1, gi2);
+                        boolean tabu = this.tabuUntil[gi1] > step || this.tabuUntil[gi2] > step;
+                        if(tabu && grid.getScore() + delta >= bestScore) continue;
+
+                        if(delta < moveDelta) {
+                            move1 = gi1;
+                            move2 = gi2;
+                            moveDelta = delta;
+                            nbTies = 1;
+                        }
+                        else if(delta == moveDelta && ThreadLocalRandom.current().nextInt(++nbTies) == 0) {
+                            move1 = gi1;
+                            move2 = gi2;
+                        }
+                    }
+                }
+            }
+
+            if(move1 < 0) break; // every move is tabu
+
+            grid.swap(move1, move2);
+            this.tabuUntil[move1] = step + this.tenure + ThreadLocalRandom.current().nextInt(2);
+            this.tabuUntil[move2] = step + this.tenure + ThreadLocalRandom.current().nextInt(2);
+
+            if(grid.getScore() < bestScore) {
+                bestScore = grid.getScore();
+                grid.store(this.best, 0);
+            }
+        }
+
+        if(grid.getScore() > bestScore) grid.load(this.best, 0);
+        return bestScore;
+    }
+
+    // each cell can take the other's value according to the template's candidates
+    private static boolean isLegal(Template template, Sudoku grid, int gi1, int gi2) {
+        return Digits.contains(template.getCandidates(gi1), grid.get(gi2))
+            && Digits.contains(template.getCandidates(gi2), grid.get(gi1));
+    }
+
+}
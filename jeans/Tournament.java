@@ -0,0 +1,25 @@
+package jeans;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/** The best of k individuals drawn at random. Larger tournaments select harder. */
+public final class Tournament implements Selection {
+
+    private final int size;
+
+    public Tournament(int size) {
+        if(size < 1) throw new IllegalArgumentException("Tournament size must be at least 1");
+        this.size = size;
+    }
+
+    @Override
+    public int select(Arena arena) {
+        int best = ThreadLocalRandom.current().nextInt(0, arena.size());
+        for(int i = 1; i < this.size; i++){
+            int contender = ThreadLocalRandom.current().nextInt(0, arena.size());
+            if(arena.getScore(contender) < arena.getScore(best)) best = contender;
+        }
+        return best;
+    }
+
+}
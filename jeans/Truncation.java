@@ -0,0 +1,37 @@
+package jeans;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Genie's original scheme: a parent comes from the best selectionRate of the population, or, as
+ * often as randomSelectionRate allows, from anywhere in it.
+ */
+public final class Truncation implements Selection {
+
+    private final double selectionRate;
+    private final double randomSelectionRate;
+
+    public Truncation(double selectionRate, double randomSelectionRate) {
+        this.selectionRate = selectionRate;
+        this.randomSelectionRate = randomSelectionRate;
+    }
+
+    public double getSelectionRate() {
+        return this.selectionRate;
+    }
+
+    public double getRandomSelectionRate() {
+        return this.randomSelectionRate;
+    }
+
+    @Override
+    public int select(Arena arena) {
+        int size = arena.size();
+        int nbBest = Math.max(1, (int) (size * this.selectionRate));
+        int nbParents = nbBest + (int) (size * this.randomSelectionRate);
+
+        int pick = ThreadLocalRandom.current().nextInt(0, nbParents);
+        return pick < nbBest ? arena.ranked(pick) : ThreadLocalRandom.current().nextInt(0, size);
+    }
+
+}
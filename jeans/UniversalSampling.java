@@ -0,0 +1,45 @@
+package jeans;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Stochastic universal sampling, with a fitness of 1 / (1 + score). Once per generation a single
+ * spin of the wheel places size evenly spaced pointers over the fitness of the whole population,
+ * filling the arena's mating pool; each draw then takes a random slot of that pool.
+ */
+public final class UniversalSampling implements Selection {
+
+    @Override
+    public void prepare(Arena arena) {
+        int size = arena.size();
+        int[] pool = arena.getMatingPool();
+
+        double total = 0;
+        for(int i = 0; i < size; i++){
+            total += fitness(arena, i);
+        }
+
+        double spacing = total / size;
+        double pointer = ThreadLocalRandom.current().nextDouble() * spacing;
+        double reached = 0;
+        int individual = -1;
+
+        for(int slot = 0; slot < size; slot++){
+            while(reached <= pointer && individual < size - 1){
+                reached += fitness(arena, ++individual);
+            }
+            pool[slot] = individual;
+            pointer += spacing;
+        }
+    }
+
+    @Override
+    public int select(Arena arena) {
+        return arena.getMatingPool()[ThreadLocalRandom.current().nextInt(0, arena.size())];
+    }
+
+    private static double fitness(Arena arena, int individual) {
+        return 1.0 / (1 + arena.getScore(individual));
+    }
+
+}
@@ -0,0 +1,137 @@
+package mark;
+
+import game.Cell;
+import game.Digits;
+import game.Layout;
+import game.Sudoku;
+
+/**
+ * The digits each cell of a Sudoku may still take, one Digits mask per cell.
+ * A filled cell's mask is just the bit of its value. Placing a digit marks the cell on the Sudoku
+ * and removes the digit from every peer.
+ *
+ * Propagation is driven by a worklist: whenever an elimination leaves a cell with a single
+ * candidate the cell is queued, and propagate() places queued cells until the queue runs dry.
+ * Work is proportional to the peers of cells that actually changed, never to the whole grid.
+ * Solvers, mutation and generators can call assign() after each decision to get the same effect.
+ */
+public class Candidates {
+
+    private final Sudoku sudoku;
+    private final Layout layout;
+    private final long[] masks;
+
+    // a cell is queued at most once, when its mask narrows to a single digit, so no wrap-around is needed
+    private final int[] queue;
+    private int head = 0;
+    private int tail = 0;
+
+    private boolean contradiction = false;
+
+    public Candidates(Sudoku sudoku) {
+        this.sudoku = sudoku;
+        this.layout = sudoku.getLayout();
+        this.masks = new long[this.layout.cellCount];
+        this.queue = new int[this.layout.cellCount];
+
+        for (int i = 0; i < this.masks.length; i++) {
+            int v = sudoku.get(i);
+            this.masks[i] = v == Cell.EMPTY ? sudoku.getCandidates(i) : Digits.bit(v);
+            if (this.masks[i] == 0) this.contradiction = true;
+            else if (v == Cell.EMPTY && Digits.isSingle(this.masks[i])) this.queue[this.tail++] = i;
+        }
+    }
+
+    /** A copy that shares nothing with this one, working on a full copy of the Sudoku. */
+    public Candidates(Candidates other) {
+        this.sudoku = other.sudoku.copy();
+        this.layout = other.layout;
+        this.masks = other.masks.clone();
+        this.queue = other.queue.clone();
+        this.head = other.head;
+        this.tail = other.tail;
+        this.contradiction = other.contradiction;
+    }
+
+    public Sudoku getSudoku() {
+        return this.sudoku;
+    }
+
+    public Layout getLayout() {
+        return this.layout;
+    }
+
+    public long get(int cell) {
+        return this.masks[cell];
+    }
+
+    public boolean isFilled(int cell) {
+        return this.sudoku.get(cell) != Cell.EMPTY;
+    }
+
+    /** True once some empty cell has run out of candidates, i.e. the givens cannot be completed. */
+    public boolean isContradicted() {
+        return this.contradiction;
+    }
+
+    /** True while some cell is queued for placement. */
+    public boolean hasPending() {
+        return this.head < this.tail;
+    }
+
+    /**
+     * Removes digits from an empty cell's candidates. Returns true if anything was removed.
+     * A cell left with one candidate is queued for the next propagate().
+     */
+    public boolean eliminate(int cell, long digits) {
+        if (this.isFilled(cell) || (this.masks[cell] & digits) == 0) return false;
+
+        long mask = this.masks[cell] & ~digits;
+        this.masks[cell] = mask;
+        if (mask == 0) this.contradiction = true;
+        else if (Digits.isSingle(mask)) this.queue[this.tail++] = cell;
+        return true;
+    }
+
+    /** Restricts an empty cell's candidates to the given digits. Returns true if anything was removed. */
+    public boolean restrict(int cell, long digits) {
+        return this.eliminate(cell, ~digits);
+    }
+
+    /** Places the digit and propagates its consequences. Returns false if the grid can no longer be completed. */
+    public boolean assign(int cell, int digit) {
+        this.place(cell, digit);
+        return this.propagate();
+    }
+
+    /** Places every queued single, and the singles those placements create. Returns false on a contradiction. */
+    public boolean propagate() {
+        while (this.head < this.tail && !this.contradiction) {
+            int cell = this.queue[this.head++];
+            if (this.isFilled(cell)) continue;
+            this.place(cell, Digits.first(this.masks[cell]));
+        }
+        return !this.contradiction;
+    }
+
+    /** Marks the digit into the cell and removes it from the cell's peers, queueing any peer left with one candidate. */
+    public void place(int cell, int digit) {
+        if (this.isFilled(cell)) {
+            if (this.sudoku.get(cell) != digit) this.contradiction = true;
+            return;
+        }
+        if (!Digits.contains(this.masks[cell], digit)) {
+            this.contradiction = true;
+            return;
+        }
+
+        this.sudoku.mark(cell, digit);
+        long bit = Digits.bit(digit);
+        this.masks[cell] = bit;
+
+        for (int peer : this.layout.peers[cell]) {
+            this.eliminate(peer, bit);
+        }
+    }
+
+}
@@ -1,90 +1,273 @@
 package mark;
 
-import game.Cell;
-import game.Group;
+import game.Digits;
+import game.Layout;
 import game.Sudoku;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-
 public class Mark {
 
     public static void mark(Sudoku sudoku) {
+        deduce(sudoku);
+    }
+
+    /** Marks every cell that can be deduced and returns the candidates left in the cells still empty. */
+    public static Candidates deduce(Sudoku sudoku) {
+        Candidates candidates = new Candidates(sudoku);
 
         boolean marksFound;
         do {
-            marksFound = findAndSetMarks(sudoku);
+            marksFound = candidates.propagate() && findAndSetMarks(candidates);
         } while(marksFound);
 
+        return candidates;
+    }
+
+    // naked singles are placed by propagation; the rest go cheapest first, back to propagation after any progress
+    private static boolean findAndSetMarks(Candidates candidates) {
+        return hiddenSingles(candidates)
+            || lockedCandidates(candidates)
+            || nakedSubsets(candidates, 2)
+            || hiddenSubsets(candidates, 2)
+            || nakedSubsets(candidates, 3)
+            || hiddenSubsets(candidates, 3)
+            || xWings(candidates);
     }
 
-    private static boolean findAndSetMarks(Sudoku sudoku) {
-        List<Cell> grid = sudoku.getCellList();
+    /** A digit that fits in only one cell of a row, column or box goes there. */
+    private static boolean hiddenSingles(Candidates candidates) {
+        Layout layout = candidates.getLayout();
+        boolean changesMade = false;
+
+        for(int[] unit : layout.units){
+            long once = 0;
+            long twice = 0;
+            long placed = 0;
+            for(int cell : unit){
+                long mask = candidates.get(cell);
+                if(candidates.isFilled(cell)) {
+                    placed |= mask;
+                }
+                else {
+                    twice |= once & mask;
+                    once |= mask;
+                }
+            }
 
-        HashMap<Integer, List<Boolean>> marks = new HashMap<>();
-        for(Cell c : grid){
-            marks.put(c.getIndex(), populateList(Boolean.TRUE, sudoku.getGroupSize()));
+            long hidden = once & ~twice & ~placed;
+            while(hidden != 0){
+                int digit = Digits.first(hidden);
+                for(int cell : unit){
+                    if(!candidates.isFilled(cell) && Digits.contains(candidates.get(cell), digit)) {
+                        candidates.place(cell, digit);
+                        changesMade = true;
+                        break;
+                    }
+                }
+                hidden &= hidden - 1;
+            }
         }
 
-        for(Cell cell : grid){
-            if(cell.getValue() != null){
-                Group r = sudoku.getRow(cell.getRowPosition());
-                Group c = sudoku.getColumn(cell.getColumnPosition());
-                Group b = sudoku.getBox(cell.getColumnPosition(), cell.getRowPosition());
+        return changesMade;
+    }
+
+    /**
+     * Pointing: if a box's candidates for a digit all lie on one row or column, no other cell of that line can take it.
+     * Box-line reduction: if a line's candidates for a digit all lie in one box, no other cell of that box can take it.
+     */
+    private static boolean lockedCandidates(Candidates candidates) {
+        Layout layout = candidates.getLayout();
+        boolean changesMade = false;
+
+        for(int box = 0; box < layout.groupSize; box++){
+            for(int digit = 1; digit <= layout.groupSize; digit++){
+                long bit = Digits.bit(digit);
+                long rows = 0;
+                long columns = 0;
+                for(int cell : layout.boxes[box]){
+                    if(candidates.isFilled(cell) || (candidates.get(cell) & bit) == 0) continue;
+                    rows |= 1L << layout.rowOf[cell];
+                    columns |= 1L << layout.columnOf[cell];
+                }
 
-                for(Cell rc : r.getValue()){
-                    marks.get(rc.getIndex()).set(cell.getValue() - 1, Boolean.FALSE);
+                if(Long.bitCount(rows) == 1) {
+                    changesMade |= eliminateOutsideBox(candidates, layout.rows[Long.numberOfTrailingZeros(rows)], box, bit);
                 }
+                if(Long.bitCount(columns) == 1) {
+                    changesMade |= eliminateOutsideBox(candidates, layout.columns[Long.numberOfTrailingZeros(columns)], box, bit);
+                }
+            }
+        }
 
-                for(Cell cc : c.getValue()){
-                    marks.get(cc.getIndex()).set(cell.getValue() - 1, Boolean.FALSE);
+        for(int u = 0; u < 2 * layout.groupSize; u++){ // rows then columns
+            int[] line = layout.units[u];
+            for(int digit = 1; digit <= layout.groupSize; digit++){
+                long bit = Digits.bit(digit);
+                long boxes = 0;
+                for(int cell : line){
+                    if(candidates.isFilled(cell) || (candidates.get(cell) & bit) == 0) continue;
+                    boxes |= 1L << layout.boxOf[cell];
                 }
 
-                for(Cell bc : b.getValue()){
-                    marks.get(bc.getIndex()).set(cell.getValue() - 1, Boolean.FALSE);
+                if(Long.bitCount(boxes) == 1) {
+                    int box = Long.numberOfTrailingZeros(boxes);
+                    boolean isRow = u < layout.groupSize;
+                    for(int cell : layout.boxes[box]){
+                        boolean onLine = isRow ? layout.rowOf[cell] == layout.rowOf[line[0]] : layout.columnOf[cell] == layout.columnOf[line[0]];
+                        if(!onLine) changesMade |= candidates.eliminate(cell, bit);
+                    }
                 }
             }
         }
 
-        boolean changesMade = Boolean.FALSE;
-        for(Cell cell : grid){
-            Integer i = isDetermined(marks.get(cell.getIndex()), cell);
-            if(i != null){
-                cell.markValue(i + 1);
-                changesMade = Boolean.TRUE;
+        return changesMade;
+    }
+
+    private static boolean eliminateOutsideBox(Candidates candidates, int[] line, int box, long bit) {
+        boolean changesMade = false;
+        for(int cell : line){
+            if(candidates.getLayout().boxOf[cell] != box) changesMade |= candidates.eliminate(cell, bit);
+        }
+        return changesMade;
+    }
+
+    /** If n cells of a group share only n candidates between them, the rest of the group cannot take those digits. */
+    private static boolean nakedSubsets(Candidates candidates, int size) {
+        boolean changesMade = false;
+
+        for(int[] unit : candidates.getLayout().units){
+            changesMade |= nakedSubsets(candidates, unit, size, 0, 0, 0L, 0L);
+        }
+
+        return changesMade;
+    }
+
+    private static boolean nakedSubsets(Candidates candidates, int[] unit, int size, int start, int depth, long union, long chosen) {
+        if(depth == size) {
+            if(Long.bitCount(union) != size) return false;
+
+            boolean changesMade = false;
+            for(int k = 0; k < unit.length; k++){
+                if((chosen & (1L << k)) == 0) changesMade |= candidates.eliminate(unit[k], union);
             }
+            return changesMade;
         }
 
+        boolean changesMade = false;
+        for(int k = start; k < unit.length; k++){
+            int cell = unit[k];
+            if(candidates.isFilled(cell)) continue;
+
+            long mask = candidates.get(cell);
+            int count = Long.bitCount(mask);
+            if(count < 2 || count > size) continue;
+
+            long next = union | mask;
+            if(Long.bitCount(next) > size) continue;
+
+            changesMade |= nakedSubsets(candidates, unit, size, k + 1, depth + 1, next, chosen | (1L << k));
+        }
         return changesMade;
     }
 
-    private static Integer isDetermined(List<Boolean> bools, Cell cell){
-        if(cell.isLocked().equals(Boolean.TRUE)) return null; // if already marked or is given
+    /** If n digits of a group fit only in the same n cells, those cells cannot take any other digit. */
+    private static boolean hiddenSubsets(Candidates candidates, int size) {
+        Layout layout = candidates.getLayout();
+        long[] positions = new long[layout.groupSize + 1];
+        boolean changesMade = false;
+
+        for(int[] unit : layout.units){
+            for(int digit = 1; digit <= layout.groupSize; digit++){
+                positions[digit] = 0;
+            }
+            for(int k = 0; k < unit.length; k++){
+                if(candidates.isFilled(unit[k])) {
+                    positions[Digits.first(candidates.get(unit[k]))] = -1L; // placed, never part of a subset
+                    continue;
+                }
+                long mask = candidates.get(unit[k]);
+                while(mask != 0){
+                    int digit = Digits.first(mask);
+                    if(positions[digit] != -1L) positions[digit] |= 1L << k;
+                    mask &= mask - 1;
+                }
+            }
+
+            changesMade |= hiddenSubsets(candidates, unit, positions, size, 1, 0, 0L, 0L);
+        }
+
+        return changesMade;
+    }
 
-        int trueCount = 0;
-        int trueIndex = -1;
+    private static boolean hiddenSubsets(Candidates candidates, int[] unit, long[] positions, int size, int start, int depth, long union, long digits) {
+        if(depth == size) {
+            if(Long.bitCount(union) != size) return false;
 
-        for (int i = 0; i < bools.size(); i++) {
-            if (bools.get(i).equals(Boolean.TRUE)) {
-                trueCount++;
-                trueIndex = i;
+            boolean changesMade = false;
+            for(int k = 0; k < unit.length; k++){
+                if((union & (1L << k)) != 0) changesMade |= candidates.restrict(unit[k], digits);
             }
+            return changesMade;
         }
 
-        if (trueCount == 1) {
-            return trueIndex;
-        } else {
-            return null;
+        boolean changesMade = false;
+        for(int digit = start; digit < positions.length; digit++){
+            long p = positions[digit];
+            if(p == -1L) continue;
+
+            int count = Long.bitCount(p);
+            if(count < 2 || count > size) continue;
+
+            long next = union | p;
+            if(Long.bitCount(next) > size) continue;
+
+            changesMade |= hiddenSubsets(candidates, unit, positions, size, digit + 1, depth + 1, next, digits | Digits.bit(digit));
         }
+        return changesMade;
+    }
+
+    /**
+     * If a digit fits in exactly the same two columns of two rows, it must take those columns in those rows,
+     * so it can be removed from the rest of both columns. Likewise with rows and columns swapped.
+     */
+    private static boolean xWings(Candidates candidates) {
+        Layout layout = candidates.getLayout();
+        return xWings(candidates, layout.rows, layout.columns) | xWings(candidates, layout.columns, layout.rows);
     }
 
-    public static <T> List<T> populateList(T value, int length) {
-        List<T> resultList = new ArrayList<>();
-        for (int i = 0; i < length; i++) {
-            resultList.add(value);
+    private static boolean xWings(Candidates candidates, int[][] lines, int[][] crossLines) {
+        int groupSize = lines.length;
+        long[] positions = new long[groupSize];
+        boolean changesMade = false;
+
+        for(int digit = 1; digit <= groupSize; digit++){
+            long bit = Digits.bit(digit);
+
+            for(int l = 0; l < groupSize; l++){
+                positions[l] = 0;
+                for(int k = 0; k < groupSize; k++){
+                    int cell = lines[l][k];
+                    if(!candidates.isFilled(cell) && (candidates.get(cell) & bit) != 0) positions[l] |= 1L << k;
+                }
+            }
+
+            for(int l1 = 0; l1 < groupSize; l1++){
+                if(Long.bitCount(positions[l1]) != 2) continue;
+                for(int l2 = l1 + 1; l2 < groupSize; l2++){
+                    if(positions[l2] != positions[l1]) continue;
+
+                    long crossing = positions[l1];
+                    while(crossing != 0){
+                        int[] crossLine = crossLines[Long.numberOfTrailingZeros(crossing)];
+                        for(int k = 0; k < groupSize; k++){
+                            if(k != l1 && k != l2) changesMade |= candidates.eliminate(crossLine[k], bit);
+                        }
+                        crossing &= crossing - 1;
+                    }
+                }
+            }
         }
-        return resultList;
+
+        return changesMade;
     }
 
 }
@@ -0,0 +1,65 @@
+package metrics;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands every event to a single background thread that delivers it to the sink, so the solver
+ * only pays for an offer to a bounded queue. When the sink falls behind and the queue is full,
+ * events are dropped and counted rather than slowing the solver down. The sink sees events from
+ * one thread, in order, and need not be thread safe.
+ */
+public final class AsyncListener implements SolverListener, AutoCloseable {
+
+    private final SolverListener sink;
+    private final ThreadPoolExecutor thread;
+    private final AtomicLong dropped = new AtomicLong();
+
+    public AsyncListener(SolverListener sink, int capacity) {
+        this.sink = sink;
+        this.thread = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS, new ArrayBlockingQueue<>(capacity), r -> {
+            Thread t = new Thread(r, "solver-listener");
+            t.setDaemon(true);
+            return t;
+        }, (r, executor) -> this.dropped.incrementAndGet());
+    }
+
+    public AsyncListener(SolverListener sink) {
+        this(sink, 1024);
+    }
+
+    @Override
+    public void onGeneration(GenerationStats stats) {
+        this.thread.execute(() -> this.sink.onGeneration(stats));
+    }
+
+    @Override
+    public void onRestart(int source, int generation) {
+        this.thread.execute(() -> this.sink.onRestart(source, generation));
+    }
+
+    @Override
+    public void onFinish(int source, boolean solved, long elapsedNanos) {
+        this.thread.execute(() -> this.sink.onFinish(source, solved, elapsedNanos));
+    }
+
+    /** Events thrown away because the queue was full. */
+    public long getDropped() {
+        return this.dropped.get();
+    }
+
+    /** Delivers what is queued, then stops the background thread. */
+    @Override
+    public void close() {
+        this.thread.shutdown();
+        try {
+            this.thread.awaitTermination(10, TimeUnit.SECONDS);
+        }
+        catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
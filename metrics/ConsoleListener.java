@@ -0,0 +1,31 @@
+package metrics;
+
+/** Prints one line for every nth generation of each population, plus restarts and finishes. */
+public final class ConsoleListener implements SolverListener {
+
+    private final int every;
+
+    public ConsoleListener(int every) {
+        this.every = Math.max(1, every);
+    }
+
+    @Override
+    public void onGeneration(GenerationStats stats) {
+        if(stats.getGeneration() % this.every != 0) return;
+
+        System.out.println(String.format("[%d] Generation %d has a best score of %d (mean %.1f, diversity %.2f, %.0f generations/sec)",
+            stats.getSource(), stats.getGeneration(), stats.getBestScore(), stats.getMeanScore(),
+            stats.getDiversity(), stats.getGenerationsPerSecond()));
+    }
+
+    @Override
+    public void onRestart(int source, int generation) {
+        System.out.println(String.format("[%d] Restarting: %d number of generations", source, generation));
+    }
+
+    @Override
+    public void onFinish(int source, boolean solved, long elapsedNanos) {
+        System.out.println(String.format("[%d] %s after %.3f s", source, solved ? "Solved" : "Gave up", elapsedNanos / 1e9));
+    }
+
+}
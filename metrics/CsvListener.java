@@ -0,0 +1,59 @@
+package metrics;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+
+/** Writes one CSV row per generation, with a header first. Flushed when a population finishes. */
+public final class CsvListener implements SolverListener {
+
+    private final Writer out;
+
+    public CsvListener(Writer out) {
+        this.out = out;
+
+        StringBuilder header = new StringBuilder("source,generation,restarts,evaluations,elapsed_ns,best,mean,diversity,allocated_bytes");
+        for(Phase phase : Phase.values()){
+            header.append(',').append(phase.name().toLowerCase()).append("_ns");
+        }
+        this.write(header.append('\n').toString());
+    }
+
+    @Override
+    public void onGeneration(GenerationStats stats) {
+        StringBuilder row = new StringBuilder()
+            .append(stats.getSource()).append(',')
+            .append(stats.getGeneration()).append(',')
+            .append(stats.getRestarts()).append(',')
+            .append(stats.getEvaluations()).append(',')
+            .append(stats.getElapsedNanos()).append(',')
+            .append(stats.getBestScore()).append(',')
+            .append(stats.getMeanScore()).append(',')
+            .append(stats.getDiversity()).append(',')
+            .append(stats.getAllocatedBytes());
+        for(Phase phase : Phase.values()){
+            row.append(',').append(stats.getPhaseNanos(phase));
+        }
+        this.write(row.append('\n').toString());
+    }
+
+    @Override
+    public void onFinish(int source, boolean solved, long elapsedNanos) {
+        try {
+            this.out.flush();
+        }
+        catch(IOException e){
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void write(String line) {
+        try {
+            this.out.write(line);
+        }
+        catch(IOException e){
+            throw new UncheckedIOException(e);
+        }
+    }
+
+}
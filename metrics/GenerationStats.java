@@ -0,0 +1,92 @@
+package metrics;
+
+/**
+ * A snapshot of one generation of one population, taken after it was sorted. Immutable, so it can
+ * be handed to another thread as is. Times are in nanoseconds since the solver started, phase
+ * times and allocation are for this generation only.
+ */
+public final class GenerationStats {
+
+    private final int source;
+    private final int generation;
+    private final int restarts;
+    private final long evaluations;
+    private final long elapsedNanos;
+    private final int bestScore;
+    private final double meanScore;
+    private final double diversity;
+    private final long allocatedBytes;
+    private final long[] phaseNanos;
+
+    public GenerationStats(int source, int generation, int restarts, long evaluations, long elapsedNanos,
+                           int bestScore, double meanScore, double diversity, long allocatedBytes, long[] phaseNanos) {
+        this.source = source;
+        this.generation = generation;
+        this.restarts = restarts;
+        this.evaluations = evaluations;
+        this.elapsedNanos = elapsedNanos;
+        this.bestScore = bestScore;
+        this.meanScore = meanScore;
+        this.diversity = diversity;
+        this.allocatedBytes = allocatedBytes;
+        this.phaseNanos = phaseNanos.clone();
+    }
+
+    /** Which population this is: the island number, or 0 for a single population. */
+    public int getSource() {
+        return this.source;
+    }
+
+    /** Generations since the solver started, across restarts. */
+    public int getGeneration() {
+        return this.generation;
+    }
+
+    public int getRestarts() {
+        return this.restarts;
+    }
+
+    /** Individuals scored since the solver started. */
+    public long getEvaluations() {
+        return this.evaluations;
+    }
+
+    public long getElapsedNanos() {
+        return this.elapsedNanos;
+    }
+
+    public int getBestScore() {
+        return this.bestScore;
+    }
+
+    public double getMeanScore() {
+        return this.meanScore;
+    }
+
+    /** Share of free cells where a sample of the population differs from the best individual, from 0 to 1. */
+    public double getDiversity() {
+        return this.diversity;
+    }
+
+    /** Bytes allocated by all threads during this generation, or -1 if the JVM cannot tell. Approximate: threads that ended during the generation are left out. */
+    public long getAllocatedBytes() {
+        return this.allocatedBytes;
+    }
+
+    public long getPhaseNanos(Phase phase) {
+        return this.phaseNanos[phase.ordinal()];
+    }
+
+    public double getGenerationsPerSecond() {
+        return this.generation / seconds(this.elapsedNanos);
+    }
+
+    public double getEvaluationsPerSecond() {
+        return this.evaluations / seconds(this.elapsedNanos);
+    }
+
+    private static double seconds(long nanos) {
+        return Math.max(1, nanos) / 1e9;
+    }
+
+}
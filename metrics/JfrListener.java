@@ -0,0 +1,72 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Commits a JFR event per generation and per restart, for viewing next to GC and CPU data in a
+ * flight recording. Events are only recorded while a recording with them enabled is running.
+ */
+public final class JfrListener implements SolverListener {
+
+    @Name("sudoku.Generation")
+    @Label("Generation")
+    @Category("Sudoku")
+    static final class GenerationEvent extends Event {
+        @Label("Source") int source;
+        @Label("Generation") int generation;
+        @Label("Best Score") int bestScore;
+        @Label("Mean Score") double meanScore;
+        @Label("Diversity") double diversity;
+        @Label("Evaluations") long evaluations;
+        @Label("Allocated") @DataAmount long allocated;
+        @Label("Select") @Timespan long select;
+        @Label("Mate") @Timespan long mate;
+        @Label("Mutate") @Timespan long mutate;
+        @Label("Score") @Timespan long score;
+        @Label("Sort") @Timespan long sort;
+        @Label("Local Search") @Timespan long localSearch;
+    }
+
+    @Name("sudoku.Restart")
+    @Label("Restart")
+    @Category("Sudoku")
+    static final class RestartEvent extends Event {
+        @Label("Source") int source;
+        @Label("Generation") int generation;
+    }
+
+    @Override
+    public void onGeneration(GenerationStats stats) {
+        GenerationEvent event = new GenerationEvent();
+        if(!event.isEnabled()) return;
+
+        event.source = stats.getSource();
+        event.generation = stats.getGeneration();
+        event.bestScore = stats.getBestScore();
+        event.meanScore = stats.getMeanScore();
+        event.diversity = stats.getDiversity();
+        event.evaluations = stats.getEvaluations();
+        event.allocated = stats.getAllocatedBytes();
+        event.select = stats.getPhaseNanos(Phase.SELECT);
+        event.mate = stats.getPhaseNanos(Phase.MATE);
+        event.mutate = stats.getPhaseNanos(Phase.MUTATE);
+        event.score = stats.getPhaseNanos(Phase.SCORE);
+        event.sort = stats.getPhaseNanos(Phase.SORT);
+        event.localSearch = stats.getPhaseNanos(Phase.LOCAL_SEARCH);
+        event.commit();
+    }
+
+    @Override
+    public void onRestart(int source, int generation) {
+        RestartEvent event = new RestartEvent();
+        event.source = source;
+        event.generation = generation;
+        event.commit();
+    }
+
+}
@@ -0,0 +1,71 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts latencies in log-linear buckets: each power of two is split into 16 equal buckets, so
+ * any percentile is known to within about 6% from 1 microsecond up to hours, in a few kilobytes.
+ * Recording is one atomic increment, so any number of threads may record at once without locking.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+    // values below SUB_BUCKETS get a bucket each, then SUB_BUCKETS buckets per power of two up to 2^63
+    private final AtomicLongArray counts = new AtomicLongArray(SUB_BUCKETS * (64 - SUB_BITS + 1));
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long micros) {
+        long value = Math.max(0, micros);
+        this.counts.incrementAndGet(bucketOf(value));
+        this.total.incrementAndGet();
+        this.sum.addAndGet(value);
+        this.max.accumulateAndGet(value, Math::max);
+    }
+
+    public long count() {
+        return this.total.get();
+    }
+
+    public double mean() {
+        long count = this.total.get();
+        return count == 0 ? 0 : (double) this.sum.get() / count;
+    }
+
+    public long max() {
+        return this.max.get();
+    }
+
+    /** The upper bound of the bucket holding the given percentile (0 to 100), or 0 before anything was recorded. */
+    public long percentile(double percentile) {
+        long count = this.total.get();
+        if(count == 0) return 0;
+
+        long rank = (long) Math.ceil(count * percentile / 100.0);
+        long seen = 0;
+        for(int bucket = 0; bucket < this.counts.length(); bucket++){
+            seen += this.counts.get(bucket);
+            if(seen >= rank && seen > 0) return Math.min(upperBound(bucket), this.max.get());
+        }
+        return this.max.get();
+    }
+
+    private static int bucketOf(long value) {
+        if(value < SUB_BUCKETS) return (int) value;
+        int magnitude = 63 - Long.numberOfLeadingZeros(value); // at least SUB_BITS
+        int sub = (int) (value >>> (magnitude - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return ((magnitude - SUB_BITS + 1) * SUB_BUCKETS) + sub;
+    }
+
+    private static long upperBound(int bucket) {
+        if(bucket < SUB_BUCKETS) return bucket;
+        int magnitude = (bucket / SUB_BUCKETS) + SUB_BITS - 1;
+        long sub = bucket % SUB_BUCKETS;
+        return ((SUB_BUCKETS + sub + 1) << (magnitude - SUB_BITS)) - 1;
+    }
+
+}
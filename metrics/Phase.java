@@ -0,0 +1,11 @@
+package metrics;
+
+/** The parts of a generation whose time is reported separately. */
+public enum Phase {
+    SELECT,
+    MATE,
+    MUTATE,
+    SCORE,
+    SORT,
+    LOCAL_SEARCH
+}
@@ -0,0 +1,18 @@
+package metrics;
+
+/**
+ * Receives progress from a stochastic solver. Calls are made on the solver's own threads, in the
+ * middle of its loop, so anything slower than a field write belongs behind an AsyncListener.
+ * Several populations may report through the same listener at once.
+ */
+public interface SolverListener {
+
+    default void onGeneration(GenerationStats stats) {}
+
+    /** The population of the given source was thrown away and created again. */
+    default void onRestart(int source, int generation) {}
+
+    /** The population of the given source stopped, either solved or out of generations. */
+    default void onFinish(int source, boolean solved, long elapsedNanos) {}
+
+}
@@ -0,0 +1,369 @@
+package server;
+
+import batch.PuzzleReader;
+import cache.Canonical;
+import cache.SolutionCache;
+import format.LineFormat;
+import game.Sudoku;
+import metrics.LatencyHistogram;
+import solver.Solver;
+import solver.Solvers;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A long-lived solver on localhost, so that puzzles pay neither JVM startup nor JIT warm-up.
+ * The protocol is plain text over TCP, one line per request and one line per answer, in order:
+ *
+ *   a puzzle in any layout LineFormat reads   ->  solution,status,micros   (as written by Batch)
+ *   !health                                   ->  ok workers=... queued=... uptime=...
+ *   !stats                                    ->  requests=... solved=... p50=... p99=... (latencies in microseconds)
+ *   !cache                                    ->  cache hits=... misses=... bypassed=... entries=... bytes=...
+ *
+ * A line that cannot be read gets error,message. Clients may pipeline: each connection has a
+ * virtual thread reading requests and another writing answers, with up to WINDOW requests in flight.
+ * If writing fails the connection is closed and the requests still in flight are cancelled.
+ *
+ * Solving happens on a fixed pool of platform threads, one per core by default, which take
+ * requests off a shared queue in batches of up to BATCH, so one wake-up serves a burst of small
+ * requests. The queue holds at most QUEUE requests across all connections; readers wait for room.
+ * close() cancels the requests still queued and closes every connection. Connection threads only parse and wait, which costs a virtual thread next to nothing.
+ * Before marking, each puzzle is looked up by its canonical form in a SolutionCache, so a puzzle
+ * equivalent under symmetry to one already answered costs no solve.
+ *
+ * Usage: SolverServer [port] [solver] [workers] [warmupFile] [cacheMegabytes]
+ */
+public class SolverServer implements Closeable {
+
+    public static final int DEFAULT_PORT = 7070;
+    public static final int DEFAULT_CACHE_MEGABYTES = 64;
+
+    // requests a worker takes off the queue at once, requests one connection may have in flight,
+    // and requests all connections together may have waiting for a worker
+    private static final int BATCH = 64;
+    private static final int WINDOW = 1024;
+    private static final int QUEUE = 4096;
+
+    private final Solver solver;
+    private final SolutionCache cache;
+    private final ServerSocket socket;
+    private final BlockingQueue<Request> queue = new ArrayBlockingQueue<>(QUEUE);
+    private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+    private final Thread[] workers;
+    private final long startNanos = System.nanoTime();
+
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private final AtomicLong nbSolved = new AtomicLong();
+    private final AtomicLong nbUnsolved = new AtomicLong();
+    private final AtomicLong nbErrors = new AtomicLong();
+    private final AtomicLong nbConnections = new AtomicLong();
+
+    private volatile boolean closed = false;
+
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        Solver solver = Solvers.byName(args.length > 1 ? args[1] : Solvers.DEFAULT);
+        int workers = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        long cacheMegabytes = args.length > 4 ? Long.parseLong(args[4]) : DEFAULT_CACHE_MEGABYTES;
+
+        SolverServer server = new SolverServer(solver, port, workers, cacheMegabytes > 0 ? new SolutionCache(cacheMegabytes << 20) : null);
+        if(args.length > 3 && !args[3].isEmpty()) {
+            long start = System.nanoTime();
+            int nb = server.warmUp(args[3]);
+            System.err.println(String.format("Warmed up on %d puzzles in %.1f s", nb, (System.nanoTime() - start) / 1e9));
+        }
+        System.err.println(String.format("Listening on localhost:%d with %d workers", server.getPort(), workers));
+        server.serve();
+    }
+
+    /** Binds to the loopback address and starts the workers; serve() then accepts connections. Port 0 picks a free one. */
+    public SolverServer(Solver solver, int port, int nbWorkers) throws IOException {
+        this(solver, port, nbWorkers, null);
+    }
+
+    /** As above, answering puzzles equivalent to ones already solved from the cache, unless it is null. */
+    public SolverServer(Solver solver, int port, int nbWorkers, SolutionCache cache) throws IOException {
+        this.solver = solver;
+        this.cache = cache;
+        this.socket = new ServerSocket();
+        this.socket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+
+        this.workers = new Thread[nbWorkers];
+        for(int w = 0; w < nbWorkers; w++){
+            this.workers[w] = new Thread(this::work, "solver-" + w);
+            this.workers[w].setDaemon(true);
+            this.workers[w].start();
+        }
+    }
+
+    public int getPort() {
+        return this.socket.getLocalPort();
+    }
+
+    public LatencyHistogram getLatencies() {
+        return this.latencies;
+    }
+
+    /** Solves every puzzle of the file through the workers, without recording them, so the JIT has compiled the hot paths. */
+    public int warmUp(String file) throws Exception {
+        List<CompletableFuture<String>> answers = new ArrayList<>();
+        try (PuzzleReader reader = new PuzzleReader(Paths.get(file))) {
+            int[] grid;
+            while((grid = reader.next()) != null) {
+                Request request = new Request(grid, false);
+                this.enqueue(request); // blocks while the queue is full, so the file is never all in memory
+                answers.add(request.answer);
+            }
+        }
+        for(CompletableFuture<String> answer : answers){
+            answer.join();
+        }
+        return answers.size();
+    }
+
+    /** Accepts connections until close(), each on a virtual thread of its own. */
+    public void serve() throws IOException {
+        while(!this.closed) {
+            Socket connection;
+            try {
+                connection = this.socket.accept();
+            }
+            catch(IOException e){
+                if(this.closed) return;
+                throw e;
+            }
+            this.nbConnections.incrementAndGet();
+            this.connections.add(connection);
+            if(this.closed) { // accepted as close() ran, which may have missed it
+                this.connections.remove(connection);
+                connection.close();
+                return;
+            }
+            Thread.ofVirtual().name("connection").start(() -> this.handle(connection));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.closed = true;
+        this.socket.close();
+        for(Thread worker : this.workers){
+            worker.interrupt();
+        }
+
+        // writers waiting on these would otherwise wait forever
+        List<Request> queued = new ArrayList<>();
+        this.queue.drainTo(queued);
+        for(Request request : queued){
+            request.answer.cancel(false);
+        }
+        for(Socket connection : this.connections){
+            try {
+                connection.close();
+            }
+            catch(IOException ignored){
+                // already closed
+            }
+        }
+    }
+
+    private static final class Request {
+        final int[] grid;
+        final boolean recorded;
+        final long receivedNanos = System.nanoTime();
+        final CompletableFuture<String> answer = new CompletableFuture<>();
+
+        Request(int[] grid, boolean recorded) {
+            this.grid = grid;
+            this.recorded = recorded;
+        }
+    }
+
+    // reads requests on this thread and writes answers, in order, on a second one
+    private void handle(Socket connection) {
+        BlockingQueue<CompletableFuture<String>> inFlight = new ArrayBlockingQueue<>(WINDOW);
+        CompletableFuture<String> end = CompletableFuture.completedFuture(null);
+
+        try (Socket s = connection;
+             BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.US_ASCII));
+             BufferedWriter out = new BufferedWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.US_ASCII))) {
+
+            Thread writer = Thread.ofVirtual().name("connection-writer").start(() -> this.write(inFlight, out, s));
+            try {
+                String line;
+                while((line = in.readLine()) != null) {
+                    if(line.isEmpty()) continue;
+                    CompletableFuture<String> answer = this.answer(line);
+                    // blocks while the window is full, unless the writer has given up and will never empty it
+                    while(!inFlight.offer(answer, 100, TimeUnit.MILLISECONDS)) {
+                        if(!writer.isAlive()) {
+                            answer.cancel(false);
+                            return;
+                        }
+                    }
+                }
+            }
+            finally {
+                while(writer.isAlive() && !inFlight.offer(end, 100, TimeUnit.MILLISECONDS)) {
+                    // the writer is still taking answers, so there will be room
+                }
+                writer.join();
+                for(CompletableFuture<String> answer : inFlight){
+                    answer.cancel(false); // left behind by a writer that failed; workers skip them
+                }
+            }
+        }
+        catch(IOException | InterruptedException e){
+            // the client went away; its remaining answers are dropped
+        }
+        finally {
+            this.connections.remove(connection);
+        }
+    }
+
+    private CompletableFuture<String> answer(String line) throws InterruptedException {
+        switch (line) {
+            case "!health":
+                return CompletableFuture.completedFuture(this.health());
+            case "!stats":
+                return CompletableFuture.completedFuture(this.stats());
+            case "!cache":
+                return CompletableFuture.completedFuture(this.cache == null ? "cache off" : this.cache.toString());
+            default:
+                try {
+                    Request request = new Request(LineFormat.parse(line), true);
+                    this.enqueue(request);
+                    return request.answer;
+                }
+                catch(IllegalArgumentException e){
+                    this.nbErrors.incrementAndGet();
+                    return CompletableFuture.completedFuture("error," + e.getMessage());
+                }
+        }
+    }
+
+    // waits while the queue is full; once closed, cancels the request instead, so whoever waits on it is let go
+    private void enqueue(Request request) throws InterruptedException {
+        while(!this.queue.offer(request, 100, TimeUnit.MILLISECONDS)) {
+            if(this.closed) {
+                request.answer.cancel(false);
+                return;
+            }
+        }
+        if(this.closed) request.answer.cancel(false); // queued after close() emptied the queue
+    }
+
+    // flushes whenever it has caught up with the answers ready so far, so pipelined answers share writes;
+    // on failure closes the socket, which ends the reader's wait for the next line
+    private void write(BlockingQueue<CompletableFuture<String>> inFlight, BufferedWriter out, Socket socket) {
+        try {
+            while(true) {
+                CompletableFuture<String> next = inFlight.peek();
+                if(next == null || !next.isDone()) out.flush();
+
+                String answer = inFlight.take().get();
+                if(answer == null) break;
+                out.write(answer);
+                out.newLine();
+            }
+            out.flush();
+        }
+        catch(Exception e){
+            // the client went away
+            try {
+                socket.close();
+            }
+            catch(IOException ignored){
+                // already closed
+            }
+        }
+    }
+
+    private void work() {
+        List<Request> batch = new ArrayList<>(BATCH);
+        try {
+            while(!this.closed) {
+                batch.add(this.queue.take());
+                this.queue.drainTo(batch, BATCH - 1);
+                for(Request request : batch){
+                    if(this.closed) request.answer.cancel(false);
+                    else if(!request.answer.isCancelled()) this.solve(request);
+                }
+                batch.clear();
+            }
+        }
+        catch(InterruptedException e){
+            // closed
+        }
+    }
+
+    private void solve(Request request) {
+        try {
+            long start = System.nanoTime();
+
+            Canonical canonical = this.cache == null ? null : this.cache.canonicalize(request.grid);
+            int[] cached = this.cache == null ? null : this.cache.get(canonical);
+            boolean solved;
+            if(cached != null) {
+                long micros = (System.nanoTime() - start) / 1000;
+                request.answer.complete(LineFormat.write(cached, new StringBuilder(cached.length + 24)).append(",solved,").append(micros).toString());
+                solved = true;
+            }
+            else {
+                Sudoku sudoku = new Sudoku(request.grid);
+                Sudoku solution = this.solver.solve(sudoku);
+                Sudoku result = solution == null ? sudoku : solution;
+                if(solution != null && this.cache != null) this.cache.put(canonical, solution.toIntArray());
+
+                long micros = (System.nanoTime() - start) / 1000;
+
+                StringBuilder str = LineFormat.write(result, new StringBuilder(result.size() + 24));
+                request.answer.complete(str.append(solution == null ? ",unsolved," : ",solved,").append(micros).toString());
+                solved = solution != null;
+            }
+
+            if(request.recorded) {
+                (solved ? this.nbSolved : this.nbUnsolved).incrementAndGet();
+                this.latencies.record((System.nanoTime() - request.receivedNanos) / 1000);
+            }
+        }
+        catch(RuntimeException | Error e){
+            // a StackOverflowError too: the writer is waiting on this answer, and the worker must live on
+            if(request.recorded) this.nbErrors.incrementAndGet();
+            request.answer.complete(LineFormat.error(e));
+        }
+    }
+
+    private String health() {
+        return String.format("ok workers=%d queued=%d connections=%d uptime=%.0fs",
+            this.workers.length, this.queue.size(), this.nbConnections.get(), (System.nanoTime() - this.startNanos) / 1e9);
+    }
+
+    private String stats() {
+        LatencyHistogram l = this.latencies;
+        return String.format("requests=%d solved=%d unsolved=%d errors=%d queued=%d mean=%.1f p50=%d p90=%d p99=%d p999=%d max=%d",
+            l.count(), this.nbSolved.get(), this.nbUnsolved.get(), this.nbErrors.get(), this.queue.size(),
+            l.mean(), l.percentile(50), l.percentile(90), l.percentile(99), l.percentile(99.9), l.max());
+    }
+
+}
@@ -0,0 +1,183 @@
+package solver;
+
+import game.Sudoku;
+import game.Template;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Simulated annealing over box-filled grids, the encoding Genie uses: each box holds every digit
+ * once, and a move swaps two free cells of a box, so only rows and columns ever conflict.
+ * Moves are not restricted to candidates: that would cut some permutations of a box off from
+ * others. The change in score is read with swapDelta before moving. Worse moves are accepted
+ * with probability exp(-delta / temperature).
+ *
+ * The temperature starts at the spread of scores over random moves, unless one is given, and is
+ * multiplied by coolingRate every stepsPerTemperature moves. When the score of a chain has not
+ * improved for maxStall temperature levels the chain is reheated to its starting temperature.
+ *
+ * Several independent chains run side by side, each on its own grid. The first to reach a score of
+ * 0 wins and the others are cancelled. A chain holds one grid and nothing else. Chains run on a
+ * pool held for the solver's lifetime, so solving puzzle after puzzle starts no threads; solves
+ * made at the same time share it, each waiting its turn for a thread.
+ */
+public class Annealer implements Solver {
+
+    private final int nbChains;
+    private final double initialTemperature;
+    private final double coolingRate;
+    private final int stepsPerTemperature;
+    private final int maxStall;
+    private final long maxSteps;
+    private final ExecutorService threads;
+
+    public Annealer() {
+        this(Runtime.getRuntime().availableProcessors(), 0, 0.99, 0, 50, 50_000_000L);
+    }
+
+    /**
+     * @param initialTemperature 0 or less to derive it from the puzzle
+     * @param stepsPerTemperature 0 or less for the square of the number of free cells
+     * @param maxSteps moves per chain before it gives up
+     */
+    public Annealer(int nbChains, double initialTemperature, double coolingRate, int stepsPerTemperature, int maxStall, long maxSteps) {
+        this(nbChains, initialTemperature, coolingRate, stepsPerTemperature, maxStall, maxSteps, Executors.newFixedThreadPool(Math.max(1, nbChains), r -> {
+            Thread thread = new Thread(r, "annealer");
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    /** As above, running the chains on the given pool, which should have a thread per chain. */
+    public Annealer(int nbChains, double initialTemperature, double coolingRate, int stepsPerTemperature, int maxStall, long maxSteps, ExecutorService threads) {
+        this.threads = threads;
+        this.nbChains = Math.max(1, nbChains);
+        this.initialTemperature = initialTemperature;
+        this.coolingRate = coolingRate;
+        this.stepsPerTemperature = stepsPerTemperature;
+        this.maxStall = maxStall;
+        this.maxSteps = maxSteps;
+    }
+
+    @Override
+    public Sudoku solve(Sudoku puzzle) {
+        if(puzzle.validate()) return puzzle.copy();
+
+        Template template = Template.compile(puzzle);
+        if(template.isContradicted()) return null;
+
+        List<Callable<Sudoku>> chains = new ArrayList<>();
+        for(int c = 0; c < nbChains; c++){
+            chains.add(() -> anneal(template));
+        }
+
+        try {
+            return threads.invokeAny(chains); // cancels the other chains once one wins
+        }
+        catch(ExecutionException e){
+            return null; // every chain ran out of steps
+        }
+        catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    // one chain; throws when it gives up, so that invokeAny waits for the others
+    private Sudoku anneal(Template template) {
+        Sudoku grid = template.fill(template.newIndividual());
+        int[] boxes = movableBoxes(template, grid.getGroupSize());
+        if(boxes.length == 0) {
+            if(grid.validate()) return grid;
+            throw new IllegalStateException("No move can be made");
+        }
+
+        int nbFree = 0;
+        for(int box : boxes){
+            nbFree += template.getFreeCells(box).length;
+        }
+        int levelLength = stepsPerTemperature > 0 ? stepsPerTemperature : nbFree * nbFree;
+        double startTemperature = initialTemperature > 0 ? initialTemperature : startingTemperature(template, grid, boxes);
+
+        // best score since the last reheat, so that a chain always cools back down to where it stalls
+        double temperature = startTemperature;
+        int bestScore = Integer.MAX_VALUE;
+        int stall = 0;
+
+        for(long step = 1; step <= maxSteps; step++){
+            if(grid.getScore() == 0) return grid;
+
+            int[] free = template.getFreeCells(boxes[ThreadLocalRandom.current().nextInt(boxes.length)]);
+            int pick1 = ThreadLocalRandom.current().nextInt(free.length);
+            int pick2 = ThreadLocalRandom.current().nextInt(free.length - 1);
+            if(pick2 >= pick1) pick2++;
+
+            int gi1 = free[pick1];
+            int gi2 = free[pick2];
+            int delta = grid.swapDelta(gi1, gi2);
+            if(delta <= 0 || ThreadLocalRandom.current().nextDouble() < Math.exp(-delta / temperature)) {
+                grid.swap(gi1, gi2);
+            }
+
+            if(step % levelLength == 0) {
+                if(Thread.currentThread().isInterrupted()) throw new IllegalStateException("Cancelled");
+
+                if(grid.getScore() < bestScore) {
+                    bestScore = grid.getScore();
+                    stall = 0;
+                }
+                else if(++stall >= maxStall) {
+                    temperature = startTemperature;
+                    bestScore = Integer.MAX_VALUE;
+                    stall = 0;
+                }
+                temperature *= coolingRate;
+            }
+        }
+
+        throw new IllegalStateException("No solution within " + maxSteps + " steps");
+    }
+
+    // boxes with at least two free cells, the only ones a swap can change
+    private static int[] movableBoxes(Template template, int groupSize) {
+        int nb = 0;
+        for(int b = 0; b < groupSize; b++){
+            if(template.getFreeCells(b).length > 1) nb++;
+        }
+        int[] boxes = new int[nb];
+        nb = 0;
+        for(int b = 0; b < groupSize; b++){
+            if(template.getFreeCells(b).length > 1) boxes[nb++] = b;
+        }
+        return boxes;
+    }
+
+    // standard deviation of the score over a short random walk, a temperature at which most moves are accepted
+    private static double startingTemperature(Template template, Sudoku grid, int[] boxes) {
+        int nbSamples = 200;
+        double sum = 0;
+        double sumOfSquares = 0;
+
+        Sudoku walk = grid.copy();
+        for(int s = 0; s < nbSamples; s++){
+            int[] free = template.getFreeCells(boxes[ThreadLocalRandom.current().nextInt(boxes.length)]);
+            int pick1 = ThreadLocalRandom.current().nextInt(free.length);
+            int pick2 = ThreadLocalRandom.current().nextInt(free.length - 1);
+            if(pick2 >= pick1) pick2++;
+
+            walk.swap(free[pick1], free[pick2]);
+            sum += walk.getScore();
+            sumOfSquares += (double) walk.getScore() * walk.getScore();
+        }
+
+        double mean = sum / nbSamples;
+        return Math.max(0.5, Math.sqrt(Math.max(0, (sumOfSquares / nbSamples) - (mean * mean))));
+    }
+
+}
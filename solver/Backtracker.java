@@ -0,0 +1,214 @@
+package solver;
+
+import game.Cell;
+import game.Digits;
+import game.Layout;
+import game.Sudoku;
+
+import java.util.Arrays;
+
+/**
+ * Exhaustive depth-first search over candidate bitmasks, one long per cell. Every assignment is
+ * propagated before branching: a cell left with one candidate is assigned (naked single), and a
+ * digit left with one place in a row, column or box goes there (hidden single), so most cells of
+ * a grid are filled without branching and contradictions surface as soon as they exist.
+ * It branches on the undecided cell with the fewest candidates (MRV), saving the masks of each
+ * level in a buffer of its own, so a search allocates one array per depth reached and no more.
+ * Deterministic: the same puzzle always gives the same answer.
+ *
+ * Propagation is what keeps 16x16 to 36x36 grids tractable; plain MRV stalls on many of them.
+ */
+public class Backtracker implements Solver {
+
+    @Override
+    public Sudoku solve(Sudoku puzzle) {
+        Sudoku solution = puzzle.copyLocked();
+        if(solution.getScore() != 0) return null; // the locked cells already clash
+
+        Search search = new Search(solution.getLayout());
+        for(int i = 0; i < solution.size(); i++){
+            int v = solution.get(i);
+            if(v != Cell.EMPTY && !search.assign(search.masks, search.places, i, Digits.bit(v))) return null;
+        }
+
+        long[] solved = search.solve();
+        if(solved == null) return null;
+
+        for(int i = 0; i < solution.size(); i++){
+            if(solution.get(i) == Cell.EMPTY) solution.set(i, Digits.first(solved[i]));
+        }
+        return solution;
+    }
+
+    private static final class Search {
+        private final Layout layout;
+        private final int groupSize;
+
+        // candidates of every cell, and for every unit and digit the number of cells of the unit that can take it,
+        // indexed (unit * groupSize) + digit - 1 with units numbered as in Layout.units
+        private final long[] masks;
+        private final byte[] places;
+
+        // copies saved before each branch, one pair of buffers per depth
+        private long[][] maskLevels = new long[16][];
+        private byte[][] placeLevels = new byte[16][];
+
+        // branches left before this attempt gives up, and where the MRV scan starts in it
+        private long budget;
+        private int offset;
+
+        Search(Layout layout) {
+            this.layout = layout;
+            this.groupSize = layout.groupSize;
+            this.masks = new long[layout.cellCount];
+            this.places = new byte[layout.units.length * this.groupSize];
+            Arrays.fill(this.masks, Digits.all(this.groupSize));
+            Arrays.fill(this.places, (byte) this.groupSize);
+        }
+
+        /**
+         * Searches in attempts with a doubling budget of branches, each starting its MRV scan at a
+         * different cell so that ties are broken differently. An unlucky first choice can hide a
+         * subtree far larger than the rest of the search; a restart gets out of it, and the last
+         * attempt is only bounded by the whole tree, so the search stays exhaustive. The offsets
+         * follow a fixed sequence, so the answer is still the same on every run.
+         */
+        long[] solve() {
+            long limit = 1024;
+            for(int attempt = 0; ; attempt++){
+                this.budget = limit;
+                this.offset = (int) (((attempt * 0x9E3779B97F4A7C15L) >>> 33) % this.masks.length);
+                long[] solved = this.run(this.masks, this.places, 0);
+                if(solved != null || this.budget >= 0) return solved;
+                limit *= 2;
+            }
+        }
+
+        // the state is fully propagated; returns the solved masks, or null if there are none or the budget ran out
+        private long[] run(long[] masks, byte[] places, int depth) {
+            if(--this.budget < 0) return null;
+
+            // MRV: the undecided cell with the fewest candidates
+            int cell = -1;
+            int bestCount = Integer.MAX_VALUE;
+            for(int k = 0; k < masks.length; k++){
+                int i = k + this.offset < masks.length ? k + this.offset : k + this.offset - masks.length;
+                int count = Long.bitCount(masks[i]);
+                if(count > 1 && count < bestCount) {
+                    cell = i;
+                    bestCount = count;
+                    if(count == 2) break;
+                }
+            }
+            if(cell < 0) return masks; // every cell decided
+
+            // on larger grids a digit often has fewer places left in some unit than any cell has candidates;
+            // branching on those places covers the same solutions with fewer branches
+            int unitDigit = bestCount > 2 ? this.fewestPlaces(places, bestCount) : -1;
+
+            long[] nextMasks = this.maskLevel(depth);
+            byte[] nextPlaces = this.placeLevel(depth);
+
+            if(unitDigit >= 0) {
+                long bit = Digits.bit((unitDigit % this.groupSize) + 1);
+                for(int place : this.layout.units[unitDigit / this.groupSize]){
+                    if((masks[place] & bit) == 0) continue;
+                    System.arraycopy(masks, 0, nextMasks, 0, masks.length);
+                    System.arraycopy(places, 0, nextPlaces, 0, places.length);
+                    if(this.assign(nextMasks, nextPlaces, place, bit)) {
+                        long[] solved = this.run(nextMasks, nextPlaces, depth + 1);
+                        if(solved != null || this.budget < 0) return solved;
+                    }
+                }
+                return null;
+            }
+
+            long candidates = masks[cell];
+            while(candidates != 0){
+                long bit = candidates & -candidates;
+                System.arraycopy(masks, 0, nextMasks, 0, masks.length);
+                System.arraycopy(places, 0, nextPlaces, 0, places.length);
+                if(this.assign(nextMasks, nextPlaces, cell, bit)) {
+                    long[] solved = this.run(nextMasks, nextPlaces, depth + 1);
+                    if(solved != null || this.budget < 0) return solved;
+                }
+                candidates ^= bit;
+            }
+            return null;
+        }
+
+        // the (unit * groupSize) + digit - 1 with the fewest places, at least 2 and under limit, or -1
+        private int fewestPlaces(byte[] places, int limit) {
+            int best = -1;
+            int bestPlaces = limit;
+            for(int k = 0; k < places.length; k++){
+                int p = places[k];
+                if(p > 1 && p < bestPlaces) {
+                    best = k;
+                    bestPlaces = p;
+                    if(p == 2) break;
+                }
+            }
+            return best;
+        }
+
+        // removes every other digit from the cell; false on a contradiction
+        boolean assign(long[] masks, byte[] places, int cell, long bit) {
+            long others = masks[cell] & ~bit;
+            while(others != 0){
+                long other = others & -others;
+                if(!this.eliminate(masks, places, cell, other)) return false;
+                others ^= other;
+            }
+            return (masks[cell] & bit) != 0;
+        }
+
+        // removes one digit from the cell's candidates and propagates; false on a contradiction
+        private boolean eliminate(long[] masks, byte[] places, int cell, long bit) {
+            if((masks[cell] & bit) == 0) return true;
+
+            long mask = masks[cell] & ~bit;
+            masks[cell] = mask;
+            if(mask == 0) return false;
+
+            // hidden single: if the digit has one place left in a unit of the cell, it goes there
+            int digit = Long.numberOfTrailingZeros(bit);
+            if(!this.removePlace(masks, places, this.layout.rowOf[cell], digit, bit)) return false;
+            if(!this.removePlace(masks, places, this.groupSize + this.layout.columnOf[cell], digit, bit)) return false;
+            if(!this.removePlace(masks, places, (2 * this.groupSize) + this.layout.boxOf[cell], digit, bit)) return false;
+
+            // naked single: the remaining digit leaves every peer
+            if((masks[cell] & (masks[cell] - 1)) == 0) {
+                long single = masks[cell];
+                for(int peer : this.layout.peers[cell]){
+                    if(!this.eliminate(masks, places, peer, single)) return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean removePlace(long[] masks, byte[] places, int unit, int digit, long bit) {
+            int left = --places[(unit * this.groupSize) + digit];
+            if(left == 0) return false; // nowhere left for the digit
+            if(left > 1) return true;
+
+            for(int c : this.layout.units[unit]){
+                if((masks[c] & bit) != 0) return masks[c] == bit || this.assign(masks, places, c, bit);
+            }
+            return false;
+        }
+
+        private long[] maskLevel(int depth) {
+            if(depth == this.maskLevels.length) this.maskLevels = Arrays.copyOf(this.maskLevels, depth * 2);
+            if(this.maskLevels[depth] == null) this.maskLevels[depth] = new long[this.masks.length];
+            return this.maskLevels[depth];
+        }
+
+        private byte[] placeLevel(int depth) {
+            if(depth == this.placeLevels.length) this.placeLevels = Arrays.copyOf(this.placeLevels, depth * 2);
+            if(this.placeLevels[depth] == null) this.placeLevels[depth] = new byte[this.places.length];
+            return this.placeLevels[depth];
+        }
+    }
+
+}
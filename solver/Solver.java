@@ -0,0 +1,14 @@
+package solver;
+
+import game.Sudoku;
+
+/**
+ * A strategy for completing a Sudoku. The given and marked cells of the input are the puzzle;
+ * any other values it holds are ignored. The input is left unmodified.
+ */
+public interface Solver {
+
+    /** A new solved grid agreeing with the puzzle's locked cells, even if the puzzle is solved already, or null if this solver found none. */
+    Sudoku solve(Sudoku puzzle);
+
+}
@@ -0,0 +1,29 @@
+package solver;
+
+import jeans.Archipelago;
+import jeans.Genie;
+
+/** Looks solvers up by the names used on command lines. */
+public final class Solvers {
+
+    /** The solver Batch and SolverServer use unless told otherwise; Genie's own main defaults to the GA it demonstrates. */
+    public static final String DEFAULT = "backtrack";
+
+    private Solvers() {}
+
+    public static Solver byName(String name) {
+        switch (name) {
+            case "backtrack":
+                return new Backtracker();
+            case "ga":
+                return new Genie();
+            case "islands":
+                return new Archipelago();
+            case "anneal":
+                return new Annealer();
+            default:
+                throw new IllegalArgumentException("Unknown solver: " + name + " (expected backtrack, ga, islands or anneal)");
+        }
+    }
+
+}